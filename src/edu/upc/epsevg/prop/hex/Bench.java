@@ -0,0 +1,94 @@
+package edu.upc.epsevg.prop.hex;
+
+import edu.upc.epsevg.prop.hex.players.HEXTEAM;
+import edu.upc.epsevg.prop.hex.players.PlayerMinimax;
+import java.awt.Point;
+
+/**
+ * Banc de proves sense interfície: cerca un conjunt fix de posicions a
+ * profunditat fixa i imprimeix els nodes totals, els nodes per segon (NPS) i
+ * una signatura (checksum) del nombre de nodes.
+ *
+ * Qualsevol canvi a la cerca que alteri l'arbre explorat canvia la signatura,
+ * i el NPS dona una xifra única de rendiment per comparar màquines.
+ *
+ * Ús: Bench [profunditatHEXTEAM] [profunditatMinimax]
+ */
+public class Bench {
+
+    /**
+     * Posicions de referència, com a seqüències de jugades (x, y) des del
+     * tauler buit. La primera dada de cada fila és la mida del tauler.
+     */
+    private static final int[][] POSICIONS = {
+        {9},
+        {9, 4, 4},
+        {9, 4, 4, 3, 5},
+        {9, 2, 6, 4, 4, 6, 2, 3, 3},
+        {9, 4, 4, 4, 3, 3, 5, 5, 2, 2, 6, 6, 1},
+        {9, 0, 8, 8, 0, 4, 4, 5, 3, 3, 5, 4, 5, 5, 4, 3, 4},
+        {9, 4, 1, 4, 2, 4, 3, 5, 3, 4, 5, 3, 6, 4, 6, 2, 7, 4, 7, 1, 8},
+        {11, 5, 5, 4, 6, 6, 4, 3, 7}
+    };
+
+    private static final int PROFUNDITAT_HEXTEAM = 3;
+    private static final int PROFUNDITAT_MINIMAX = 2;
+
+    public static void main(String[] args) {
+        int profHexteam = args.length > 0 ? Integer.parseInt(args[0]) : PROFUNDITAT_HEXTEAM;
+        int profMinimax = args.length > 1 ? Integer.parseInt(args[1]) : PROFUNDITAT_MINIMAX;
+
+        long nodesTotals = 0;
+        long nanosTotals = 0;
+        long signatura = 0;
+
+        for (int i = 0; i < POSICIONS.length; i++) {
+            HexGameStatus posicio = construeixPosicio(POSICIONS[i]);
+            PlayerType torn = posicio.getCurrentPlayer();
+
+            IPlayer[] jugadors = {
+                new HEXTEAM(profHexteam, torn, Long.MAX_VALUE),
+                new PlayerMinimax(profMinimax, torn)
+            };
+
+            for (IPlayer jugador : jugadors) {
+                long inici = System.nanoTime();
+                PlayerMove m = jugador.move(new HexGameStatus(posicio));
+                long nanos = System.nanoTime() - inici;
+
+                long nodes = m.getNumerOfNodesExplored();
+                nodesTotals += nodes;
+                nanosTotals += nanos;
+                signatura = signatura * 31 + nodes;
+                Point p = m.getPoint();
+                if (p != null) {
+                    signatura = signatura * 31 + (p.x * posicio.getSize() + p.y);
+                }
+
+                System.out.println(String.format("pos %2d %-14s depth %2d  nodes %10d  move %-8s %8d ms",
+                        i, jugador.getName(), m.getMaxDepthReached(), nodes,
+                        p == null ? "-" : "(" + p.x + "," + p.y + ")", nanos / 1_000_000));
+            }
+        }
+
+        long nps = nanosTotals > 0 ? nodesTotals * 1_000_000_000L / nanosTotals : 0;
+        System.out.println("===========================");
+        System.out.println("Total time (ms) : " + nanosTotals / 1_000_000);
+        System.out.println("Nodes searched  : " + nodesTotals);
+        System.out.println("Nodes/second    : " + nps);
+        System.out.println("Signature       : " + Long.toHexString(signatura));
+    }
+
+    /**
+     * Reprodueix una seqüència de jugades sobre un tauler buit.
+     * @param seq mida del tauler seguida de parelles (x, y)
+     * @return estat de joc resultant
+     */
+    static HexGameStatus construeixPosicio(int[] seq) {
+        HexGameStatus s = new HexGameStatus(seq[0]);
+        for (int k = 1; k + 1 < seq.length; k += 2) {
+            s.placeStone(new Point(seq[k], seq[k + 1]));
+        }
+        return s;
+    }
+}
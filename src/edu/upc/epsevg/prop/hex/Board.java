@@ -1,6 +1,9 @@
 package edu.upc.epsevg.prop.hex;
 
 
+import edu.upc.epsevg.prop.hex.players.ProgressSource;
+import edu.upc.epsevg.prop.hex.players.SearchProgress;
+import edu.upc.epsevg.prop.hex.players.WarmUp;
 import java.awt.*;
 import java.awt.RadialGradientPaint;
 import java.awt.RenderingHints;
@@ -12,8 +15,11 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.ref.WeakReference;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Logger;
 import javax.imageio.ImageIO;
 import javax.swing.JFrame;
@@ -56,7 +62,24 @@ public class Board extends MouseAdapter {
     private UIStates gameEstatus;
     private JControlsPanel controlPanel;
     private JPanel boardPanel;
+    private BufferedImage fons;         // fons, graella i vores ja pintats
+    private final BufferedImage[] sprites = new BufferedImage[2]; // pedra blanca i negra
+    private int radiSprites;
+    private SearchProgress.Snapshot heatmap; // progrés de la cerca en curs (només des de l'EDT)
+
+    /**
+     * Vegades per segon que es mostreja el progrés de la cerca.
+     */
+    private static final int HEATMAP_FPS = 10;
+
+    /**
+     * Temps màxim d'escalfament de cada jugador abans de la primera partida.
+     */
+    private static final long WARMUP_MILLIS = 3000;
+    private boolean escalfat;           // els jugadors ja s'han escalfat
     private List<Point> currentClickedPath;
+    private Path recordFile;            // on es desen les partides (null per no desar-les)
+    private GameRecord partida;         // registre de la partida en curs (si es desen)
 
     private IPlayer getCurrentPlayer() {
         return players[PlayerType.to_01(curPlayer)];
@@ -139,6 +162,41 @@ public class Board extends MouseAdapter {
     }
 
 
+    /**
+     * Desa cada partida acabada, en format {@link GameRecord}, al final del
+     * fitxer indicat. Les jugades humanes es desen amb temps i nodes 0; les
+     * partides aturades amb "Stop" no es desen.
+     * @param recordFile fitxer de registres (null per no desar-les)
+     */
+    public void setRecordFile(Path recordFile) {
+        this.recordFile = recordFile;
+    }
+
+    /**
+     * Afegeix una jugada al registre de la partida en curs, si n'hi ha.
+     */
+    private void registra(Point p, long millis, long nodes, int depth) {
+        if (partida != null) {
+            partida.addMove(p, (int) millis, nodes, depth);
+        }
+    }
+
+    /**
+     * Desa el registre de la partida acabada.
+     */
+    private void desaPartida() {
+        if (partida == null) {
+            return;
+        }
+        partida.setWinner(status.GetWinner());
+        try {
+            GameRecord.append(recordFile, Collections.singletonList(partida));
+        } catch (IOException ex) {
+            Logger.getLogger(Board.class.getName()).log(java.util.logging.Level.SEVERE, "No s'ha pogut desar la partida", ex);
+        }
+        partida = null;
+    }
+
     private void showCurrentStatus() {
         //controlPanel.setScore1(status.getScore(PlayerType.PLAYER1));
         //controlPanel.setScore2(status.getScore(PlayerType.PLAYER2));
@@ -201,12 +259,20 @@ public class Board extends MouseAdapter {
         boardPanel.repaint();
         curPlayer = PlayerType.PLAYER1;
         if (gameEstatus == UIStates.PLAYING_TO) { //wish to STOP
+            partida = null;
             gameEstatus = UIStates.INIT;
             showCurrentStatus();
         } else if (gameEstatus == UIStates.INIT || gameEstatus == UIStates.END_GAME) {
+            partida = recordFile == null ? null : new GameRecord(size, players[0].getName(), players[1].getName());
             gameEstatus = UIStates.PLAYING_TO;
             showCurrentStatus();
-            startTurn();
+            if (escalfat) {
+                startTurn();
+            } else {
+                controlPanel.setButtonEnabled(false);
+                controlPanel.setThinking(true);
+                new WarmUpWorker().execute();
+            }
         }
 
     }
@@ -222,6 +288,9 @@ public class Board extends MouseAdapter {
             m.setWatchdog(w);
             w.execute();
             m.execute();
+            if (getCurrentPlayer() instanceof ProgressSource) {
+                new ProgressSampler(m, (ProgressSource) getCurrentPlayer()).execute();
+            }
             //(new Mover()).doInBackground();
         } else {
 
@@ -233,6 +302,7 @@ public class Board extends MouseAdapter {
     private void endTurn() {
         currentClickedPath.clear();
         if (status.isGameOver()) {
+            desaPartida();
             gameEstatus = UIStates.END_GAME;
             showCurrentStatus();
         } else {
@@ -272,6 +342,89 @@ public class Board extends MouseAdapter {
             m.timeout();
         }
     }
+    /**
+     * Escalfa els jugadors automàtics abans de la primera jugada, fora de
+     * l'EDT, i després comença el torn.
+     */
+    class WarmUpWorker extends SwingWorker<String, Object> {
+
+        @Override
+        public String doInBackground() {
+            StringBuilder info = new StringBuilder();
+            for (IPlayer p : players) {
+                if (p instanceof WarmUp) {
+                    long ms = ((WarmUp) p).warmUp(size, WARMUP_MILLIS);
+                    info.append("Warm-up ").append(p.getName()).append(": ").append(ms).append(" ms\n");
+                }
+            }
+            return info.toString();
+        }
+
+        @Override
+        protected void done() {
+            escalfat = true;
+            try {
+                controlPanel.setInfo(get());
+            } catch (ExecutionException ex) {
+                // La partida comença igualment, amb els jugadors sense escalfar
+                Logger.getLogger(Board.class.getName()).log(java.util.logging.Level.WARNING, "Warm-up failed",
+                        ex.getCause());
+                controlPanel.setInfo("Warm-up failed: " + ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                showCurrentStatus();
+                startTurn();
+            }
+        }
+    }
+
+    /**
+     * Mostreja el progrés de la cerca a {@link #HEATMAP_FPS} imatges per
+     * segon mentre el jugador pensa. La cerca no s'espera mai: només escriu
+     * al seu {@link SearchProgress} i aquest fil en llegeix còpies.
+     */
+    class ProgressSampler extends SwingWorker<Void, SearchProgress.Snapshot> {
+
+        Mover m;
+        ProgressSource source;
+
+        ProgressSampler(Mover m, ProgressSource source) {
+            this.m = m;
+            this.source = source;
+        }
+
+        @Override
+        public Void doInBackground() {
+            try {
+                while (!m.isDone()) {
+                    Thread.sleep(1000 / HEATMAP_FPS);
+                    SearchProgress.Snapshot s = source.getSearchProgress().snapshot();
+                    if (s != null && s.getDepth() > 0) {
+                        publish(s);
+                    }
+                }
+            } catch (InterruptedException ex) {
+            }
+            return null;
+        }
+
+        @Override
+        protected void process(List<SearchProgress.Snapshot> chunks) {
+            // Només interessa la més recent
+            if (!m.isDone()) {
+                heatmap = chunks.get(chunks.size() - 1);
+                boardPanel.repaint();
+            }
+        }
+
+        @Override
+        protected void done() {
+            heatmap = null;
+            boardPanel.repaint();
+        }
+    }
+
     /**
      * This method guarantees that garbage collection is done unlike
      * <code>{@link System#gc()}</code>
@@ -291,6 +444,8 @@ public class Board extends MouseAdapter {
 
         Watchdog w;
         boolean hasMoved = false;
+        String info;
+        long millis;                    // temps que ha pensat el jugador
 
         Mover() {
 
@@ -306,10 +461,12 @@ public class Board extends MouseAdapter {
         public PlayerMove doInBackground() {
             try {
                 gc();
+                long inici = System.currentTimeMillis();
                 PlayerMove m = getCurrentPlayer().move(new HexGameStatus(status));//, curPlayer); 
-                String info = "Profunditat màxima:" + m.getMaxDepthReached() + "\n";
+                millis = System.currentTimeMillis() - inici;
+                // Es mostra a done(), des de l'EDT
+                info = "Profunditat màxima:" + m.getMaxDepthReached() + "\n";
                 info += "Node explorats:    " + m.getNumerOfNodesExplored();
-                Board.this.controlPanel.setInfo(info);
                 hasMoved = true;
                 gc();
                 
@@ -335,16 +492,20 @@ public class Board extends MouseAdapter {
                 if (w != null) {
                     w.cancel(true);
                 }
+                if (info != null) {
+                    Board.this.controlPanel.setInfo(info);
+                }
                 if (m != null && m.getPoint()!= null) {
 
                     
                     status.placeStone(m.getPoint());
+                    registra(m.getPoint(), millis, m.getNumerOfNodesExplored(), m.getMaxDepthReached());
 
                     
                     lastPostAuto = m.getPoint();  // posició de destí (la última del path)
                     Board.this.controlPanel.setThinking(false);
                     //System.out.println(">" + status.toString());
-                    boardPanel.repaint();
+                    repaintCell(m.getPoint());
                     
                     if(Board.this.pauseInAutomatic){
                         
@@ -434,6 +595,186 @@ public class Board extends MouseAdapter {
         return new Point(x, y);
     }
     
+    /**
+     * Pinta el fons escalat, la graella i les vores dels jugadors en una
+     * imatge que es reaprofita mentre el tauler no canviï de mida.
+     */
+    private BufferedImage pintaFons(int w, int hh) {
+        BufferedImage img = new BufferedImage(Math.max(w, 1), Math.max(hh, 1), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = img.createGraphics();
+        Graphics g = g2d;
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+
+        Color blackColor = new Color(45, 72, 106, 255);
+        Color whiteColor = new Color(255, 255, 255, 255);
+
+        g.drawImage(image, 0, 0, w, hh, null);
+
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                drawHexa(g2d, getCoord(baseX, baseY, i, j), r - b);
+            }
+        }
+
+        //-------------------------------------------------------------------
+        int xPoints[] = new int[n * 2 + 3];
+        int yPoints[] = new int[n * 2 + 3];
+
+        Point p = getCoord(baseX, baseY, 0, 0);
+        p.x -= h;
+        p.y -= (Math.cos(Math.PI / 3)) * r;
+
+        p.x -= h;
+        p.y -= r * (1 - Math.cos(Math.PI / 3));
+
+        double ddy = (1 - Math.cos(Math.PI / 3)) * r;
+        double ddx = dx / 2;
+        double xx = p.x, yy = p.y;
+        for (int j = 0; j <= 2 * n + 1; j++) {
+            xPoints[j] = (int) xx;
+            yPoints[j] = (int) (yy + (j % 2 == 1 ? ddy : 0));
+            xx += ddx;
+        }
+        xPoints[xPoints.length - 2] = xPoints[0];
+        yPoints[yPoints.length - 2] = yPoints[0];
+
+        g2d.setStroke(new BasicStroke(7));
+        g.setColor(blackColor);
+        g.fillPolygon(xPoints, yPoints, 2 * n + 2);
+
+        xx = p.x;
+        yy = p.y;
+//        xx-=h;
+//        yy -= r * (1-Math.cos(Math.PI/3));
+        int j = 0;
+        for (; j < 2 * n + 1; j++) {
+            xPoints[j] = (int) xx;
+            yPoints[j] = (int) yy;
+            if (j % 2 == 0) {
+                xx += h;
+                yy += r * (1 - Math.cos(Math.PI / 3));
+            } else {
+                yy += r * 2 * Math.sin(Math.PI / 6);
+            }
+        }
+        xPoints[j] = xPoints[0];
+        yPoints[j] = yPoints[0];
+
+        g2d.setStroke(new BasicStroke(7));
+        g.setColor(whiteColor);
+        g.fillPolygon(xPoints, yPoints, 2 * n + 2);
+
+        p = getCoord(baseX, baseY, n - 1, 0);
+        //p.x -=h;
+        p.y += r;//(Math.cos(Math.PI/3))*r;
+        //double ddy = (1-Math.cos(Math.PI/3))*r;
+        //double ddx = dx/2;
+        xx = p.x;
+        yy = p.y;
+        for (j = 0; j <= 2 * n; j++) {
+            xPoints[j] = (int) xx;
+            yPoints[j] = (int) (yy - (j % 2 == 1 ? ddy : 0));
+            xx += ddx;
+        }
+        xPoints[j] = xPoints[0];
+        yPoints[j] = yPoints[0];
+        g.setColor(blackColor);
+        g.fillPolygon(xPoints, yPoints, 2 * n + 1);
+
+        p = getCoord(baseX, baseY, 0, n - 1);
+        p.x += h;
+        p.y -= (Math.cos(Math.PI / 3)) * r;
+        xx = p.x;
+        yy = p.y;
+        for (j = 0; j <= 2 * n + 1; j++) {
+            xPoints[j] = (int) xx;
+            yPoints[j] = (int) (yy);
+            if (j % 2 == 1) {
+                xx += h;
+                yy += r * (1 - Math.cos(Math.PI / 3));
+            } else {
+                yy += r * 2 * Math.sin(Math.PI / 6);
+            }
+        }
+        xPoints[j] = xPoints[0];
+        yPoints[j] = yPoints[0];
+        g2d.setStroke(new BasicStroke(7));
+        g.setColor(whiteColor);
+        g.fillPolygon(xPoints, yPoints, 2 * n + 1);
+
+        g2d.dispose();
+        return img;
+    }
+
+    /**
+     * Superposa el progrés de la cerca: com més nodes ha rebut una jugada de
+     * l'arrel, més opaca; la millor jugada de la iteració, en verd.
+     */
+    private void pintaHeatmap(Graphics2D g2d, SearchProgress.Snapshot s) {
+        if (s.getSize() != n) {
+            return;
+        }
+        long max = s.getMaxNodes();
+        if (max == 0) {
+            return;
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                long nodes = s.getNodes(j, i);
+                if (nodes == 0 || status.getPos(j, i) != 0) {
+                    continue;
+                }
+                int alpha = (int) (40 + 160 * nodes / max);
+                boolean millor = s.getBestCell() == j * n + i;
+                Color c = millor ? new Color(0, 200, 0, alpha) : new Color(255, 120, 0, alpha);
+                drawHexa(g2d, getCoord(baseX, baseY, i, j), r - b - 4, true, c);
+            }
+        }
+    }
+
+    /**
+     * Pedra pre-renderitzada per a cada color i radi.
+     */
+    private BufferedImage spritePedra(boolean isWhite, int radius) {
+        int idx = isWhite ? 0 : 1;
+        if (sprites[idx] == null || radiSprites != radius) {
+            if (radiSprites != radius) {
+                sprites[0] = null;
+                sprites[1] = null;
+                radiSprites = radius;
+            }
+            BufferedImage img = new BufferedImage(2 * radius + 2, 2 * radius + 2, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2 = img.createGraphics();
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                    RenderingHints.VALUE_ANTIALIAS_ON);
+            // paintStone situa la brillantor respecte d'un punt absolut (45, 25):
+            // es pinta lluny d'aquest punt perquè quedi a dalt a l'esquerra,
+            // com a les pedres del tauler
+            int desplacament = 1000;
+            g2.translate(-desplacament, -desplacament);
+            paintStone(g2, isWhite, desplacament + radius + 1, desplacament + radius + 1, radius);
+            g2.dispose();
+            sprites[idx] = img;
+        }
+        return sprites[idx];
+    }
+
+    /**
+     * Repinta només la casella on s'ha posat una pedra (o tot el tauler si
+     * la partida s'ha acabat, per marcar el camí guanyador).
+     */
+    private void repaintCell(Point pos) {
+        if (pos == null || status.isGameOver()) {
+            boardPanel.repaint();
+            return;
+        }
+        Point p = getCoord(baseX, baseY, pos.y, pos.x);
+        boardPanel.repaint(p.x - r, p.y - r, 2 * r, 2 * r);
+    }
+
     private void initComponents() {
         try {
             image = ImageIO.read(getClass().getResource("/resources/back.jpg"));
@@ -464,128 +805,48 @@ public class Board extends MouseAdapter {
 
                 super.paintComponent(g);
 
-                Color blackColor = new Color(45, 72, 106, 255);
-                Color whiteColor = new Color(255, 255, 255, 255);
-                Color backColor = new Color(241, 200, 134, 255);
-
                 Graphics2D g2d = (Graphics2D) g;
                 g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
                         RenderingHints.VALUE_ANTIALIAS_ON);
 
-                
-                g.drawImage(image, 0, 0, getWidth(), getHeight(), null);
-
-                //g.setColor(backColor);
-                //g.fillRect(0, 0, getWidth(), getHeight());
                 baseX = (int) ((getWidth() - ((n - 1) * dx + (n - 1) * h)) / 2);
                 baseY = (int) ((getHeight() - (n - 1) * dy) / 2);
 
+                // Fons, graella i vores: només es tornen a pintar si canvia la mida
+                if (fons == null || fons.getWidth() != getWidth() || fons.getHeight() != getHeight()) {
+                    fons = pintaFons(getWidth(), getHeight());
+                }
+                g.drawImage(fons, 0, 0, null);
+
                 if (status.isGameOver()) {
                     ArrayList<Point> solPoints = status.getSolution();
                     for (Point pPos : solPoints) {
                         Point p = getCoord(baseX, baseY, pPos.y, pPos.x);
                         drawHexa(g2d, p, r - b, true, new Color(241, 0, 0, 255));//curPlayerIdx==1? whiteColor:blackColor);
+                        drawHexa(g2d, p, r - b);
                     }
                 }
 
+                // Només les pedres que toquen la zona a repintar
+                Rectangle clip = g.getClipBounds();
+                int radi = r - b - 8;
                 for (int i = 0; i < n; i++) {
                     for (int j = 0; j < n; j++) {
-                        Point p = getCoord(baseX, baseY, i, j);
-                        
-                        drawHexa(g2d, p, r - b);
                         int color = status.getPos(j, i);
-                        if (color != 0) {
-                            paintStone(g2d, color == 1, p.x, p.y, r - b - 8);
+                        if (color == 0) {
+                            continue;
+                        }
+                        Point p = getCoord(baseX, baseY, i, j);
+                        if (clip == null || clip.intersects(p.x - radi - 1, p.y - radi - 1, 2 * radi + 2, 2 * radi + 2)) {
+                            BufferedImage sprite = spritePedra(color == 1, radi);
+                            g.drawImage(sprite, p.x - radi - 1, p.y - radi - 1, null);
                         }
                     }
                 }
 
-                //-------------------------------------------------------------------
-                int xPoints[] = new int[n * 2 + 3];
-                int yPoints[] = new int[n * 2 + 3];
-
-                Point p = getCoord(baseX, baseY, 0, 0);
-                p.x -= h;
-                p.y -= (Math.cos(Math.PI / 3)) * r;
-
-                p.x -= h;
-                p.y -= r * (1 - Math.cos(Math.PI / 3));
-
-                double ddy = (1 - Math.cos(Math.PI / 3)) * r;
-                double ddx = dx / 2;
-                double xx = p.x, yy = p.y;
-                for (int j = 0; j <= 2 * n + 1; j++) {
-                    xPoints[j] = (int) xx;
-                    yPoints[j] = (int) (yy + (j % 2 == 1 ? ddy : 0));
-                    xx += ddx;
-                }
-                xPoints[xPoints.length - 2] = xPoints[0];
-                yPoints[yPoints.length - 2] = yPoints[0];
-
-                g2d.setStroke(new BasicStroke(7));
-                g.setColor(blackColor);
-                g.fillPolygon(xPoints, yPoints, 2 * n + 2);
-
-                xx = p.x;
-                yy = p.y;
-//                xx-=h;
-//                yy -= r * (1-Math.cos(Math.PI/3));
-                int j = 0;
-                for (; j < 2 * n + 1; j++) {
-                    xPoints[j] = (int) xx;
-                    yPoints[j] = (int) yy;
-                    if (j % 2 == 0) {
-                        xx += h;
-                        yy += r * (1 - Math.cos(Math.PI / 3));
-                    } else {
-                        yy += r * 2 * Math.sin(Math.PI / 6);
-                    }
-                }
-                xPoints[j] = xPoints[0];
-                yPoints[j] = yPoints[0];
-
-                g2d.setStroke(new BasicStroke(7));
-                g.setColor(whiteColor);
-                g.fillPolygon(xPoints, yPoints, 2 * n + 2);
-
-                p = getCoord(baseX, baseY, n - 1, 0);
-                //p.x -=h;
-                p.y += r;//(Math.cos(Math.PI/3))*r;
-                //double ddy = (1-Math.cos(Math.PI/3))*r;
-                //double ddx = dx/2;
-                xx = p.x;
-                yy = p.y;
-                for (j = 0; j <= 2 * n; j++) {
-                    xPoints[j] = (int) xx;
-                    yPoints[j] = (int) (yy - (j % 2 == 1 ? ddy : 0));
-                    xx += ddx;
+                if (heatmap != null) {
+                    pintaHeatmap(g2d, heatmap);
                 }
-                xPoints[j] = xPoints[0];
-                yPoints[j] = yPoints[0];
-                g.setColor(blackColor);
-                g.fillPolygon(xPoints, yPoints, 2 * n + 1);
-
-                p = getCoord(baseX, baseY, 0, n - 1);
-                p.x += h;
-                p.y -= (Math.cos(Math.PI / 3)) * r;
-                xx = p.x;
-                yy = p.y;
-                for (j = 0; j <= 2 * n + 1; j++) {
-                    xPoints[j] = (int) xx;
-                    yPoints[j] = (int) (yy);
-                    if (j % 2 == 1) {
-                        xx += h;
-                        yy += r * (1 - Math.cos(Math.PI / 3));
-                    } else {
-                        yy += r * 2 * Math.sin(Math.PI / 6);
-                    }
-                }
-                xPoints[j] = xPoints[0];
-                yPoints[j] = yPoints[0];
-                g2d.setStroke(new BasicStroke(7));
-                g.setColor(whiteColor);
-                g.fillPolygon(xPoints, yPoints, 2 * n + 1);
-
             }
 
             @Override
@@ -639,8 +900,9 @@ public class Board extends MouseAdapter {
             if(to!=null && status.getPos(to)==0){
                 
                 status.placeStone(to);
+                registra(to, 0, 0, 0);
                 System.out.println(">" + status.toString());
-                boardPanel.repaint();
+                repaintCell(to);
                 endTurn();
                 
             }
@@ -0,0 +1,92 @@
+package edu.upc.epsevg.prop.hex;
+
+import edu.upc.epsevg.prop.hex.players.DfpnSolver;
+import edu.upc.epsevg.prop.hex.players.HEXTEAM;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Banc de proves del resolutor de finals: genera posicions reproduïbles amb
+ * un nombre fix de caselles buides (partides de HEXTEAM a profunditat fixa
+ * des d'obertures aleatòries) i mesura quantes en demostra DFPN dins d'un
+ * pressupost de temps i de nodes.
+ *
+ * Serveix per triar el llindar de caselles buides del jugador: per sota de
+ * la mida on gairebé totes les posicions es resolen, l'intent surt a compte.
+ *
+ * Ús: DfpnBench mida buides [posicions] [milisegons] [nodes] [llavor]
+ */
+public class DfpnBench {
+
+    private static final int JUGADES_OBERTURA = 4;
+    private static final int PROFUNDITAT_PARTIDA = 2;
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Ús: DfpnBench mida buides [posicions] [milisegons] [nodes] [llavor]");
+            return;
+        }
+        int mida = Integer.parseInt(args[0]);
+        int buides = Integer.parseInt(args[1]);
+        int posicions = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        long millis = args.length > 3 ? Long.parseLong(args[3]) : 2500;
+        long maxNodes = args.length > 4 ? Long.parseLong(args[4]) : Long.MAX_VALUE;
+        long llavor = args.length > 5 ? Long.parseLong(args[5]) : 1;
+
+        SplittableRandom rnd = new SplittableRandom(llavor);
+        DfpnSolver solver = new DfpnSolver(20);
+        int demostrades = 0;
+        long nodesTotals = 0;
+        long millisTotals = 0;
+        for (int i = 0; i < posicions; i++) {
+            HexGameStatus posicio = generaPosicio(mida, buides, rnd);
+            // Cada posició comença amb la taula buida: es mesura el cost en fred
+            solver.clear();
+            long inici = System.currentTimeMillis();
+            DfpnSolver.Status resultat = solver.solve(posicio, maxNodes, inici + millis);
+            long temps = System.currentTimeMillis() - inici;
+            if (resultat != DfpnSolver.Status.UNKNOWN) {
+                demostrades++;
+            }
+            nodesTotals += solver.getNodes();
+            millisTotals += temps;
+            System.out.println(String.format("pos %2d  %-7s  nodes %10d  %6d ms",
+                    i, resultat, solver.getNodes(), temps));
+        }
+        System.out.println("===========================");
+        System.out.println("Board size      : " + mida + "x" + mida + ", " + buides + " empty cells");
+        System.out.println("Proved          : " + demostrades + "/" + posicions);
+        System.out.println("Nodes searched  : " + nodesTotals);
+        System.out.println("Total time (ms) : " + millisTotals);
+    }
+
+    /**
+     * Juga una partida de HEXTEAM contra si mateix fins que queden les
+     * caselles buides demanades; torna a començar si s'acaba abans.
+     */
+    private static HexGameStatus generaPosicio(int mida, int buides, SplittableRandom rnd) {
+        while (true) {
+            HexGameStatus s = new HexGameStatus(mida);
+            HEXTEAM[] jugadors = {
+                new HEXTEAM(PROFUNDITAT_PARTIDA, PlayerType.PLAYER1, Long.MAX_VALUE),
+                new HEXTEAM(PROFUNDITAT_PARTIDA, PlayerType.PLAYER2, Long.MAX_VALUE)
+            };
+            for (HEXTEAM j : jugadors) {
+                j.setDfpnThreshold(0);
+            }
+            int restants = mida * mida;
+            for (int k = 0; k < JUGADES_OBERTURA; k++, restants--) {
+                List<MoveNode> moviments = s.getMoves();
+                s.placeStone(moviments.get(rnd.nextInt(moviments.size())).getPoint());
+            }
+            while (restants > buides && !s.isGameOver()) {
+                HEXTEAM j = jugadors[s.getCurrentPlayer() == PlayerType.PLAYER1 ? 0 : 1];
+                s.placeStone(j.move(new HexGameStatus(s)).getPoint());
+                restants--;
+            }
+            if (!s.isGameOver()) {
+                return s;
+            }
+        }
+    }
+}
@@ -10,6 +10,7 @@ import edu.upc.epsevg.prop.hex.players.PlayerMinimax;
 
 
 
+import java.nio.file.Paths;
 import javax.swing.SwingUtilities;
 
 /**
@@ -18,7 +19,8 @@ import javax.swing.SwingUtilities;
  */
 public class Game {
         /**
-     * @param args
+     * @param args [fitxer de registres]: si es dona, s'hi desen les partides
+     *        acabades ({@link GameRecord})
      */
     public static void main(String[] args) { 
         
@@ -33,7 +35,8 @@ public class Game {
                 //IPlayer player2 = new HumanPlayer("Human");
                 IPlayer player2 = new PlayerMinimax(3, PlayerType.PLAYER1);
                                 
-                new Board(player1 , player2, 9 /*mida*/,  8/*s*/, false);
+                Board board = new Board(player1 , player2, 9 /*mida*/,  8/*s*/, false);
+                board.setRecordFile(args.length > 0 ? Paths.get(args[0]) : null);
              }
         });
     }
@@ -0,0 +1,265 @@
+package edu.upc.epsevg.prop.hex;
+
+import java.awt.Point;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Registre binari compacte d'una partida: mida, noms dels jugadors,
+ * guanyador i llista de jugades amb el temps i els nodes de cadascuna.
+ *
+ * Format (big-endian), un registre darrere l'altre dins el fitxer:
+ * <pre>
+ *   int    MAGIC ("HEXR")
+ *   byte   versió
+ *   byte   mida del tauler
+ *   short  + UTF-8   nom del jugador 1
+ *   short  + UTF-8   nom del jugador 2
+ *   byte   guanyador (0 cap, 1 PLAYER1, 2 PLAYER2)
+ *   short  nombre de jugades
+ *   per jugada: byte x, byte y, int ms, long nodes, byte profunditat
+ * </pre>
+ */
+public class GameRecord {
+
+    private static final int MAGIC = 0x48455852; // "HEXR"
+    private static final byte VERSION = 1;
+    private static final int MIDA_JUGADA = 15;
+    private static final int MIDA_BUFFER = 1 << 16;
+
+    private final int size;
+    private final String player1;
+    private final String player2;
+    private PlayerType winner;
+    private final List<Move> moves = new ArrayList<>();
+
+    public GameRecord(int size, String player1, String player2) {
+        this.size = size;
+        this.player1 = player1;
+        this.player2 = player2;
+    }
+
+    /**
+     * Afegeix una jugada al registre.
+     * @param p posició jugada
+     * @param millis temps que ha pensat el jugador
+     * @param nodes nodes explorats
+     * @param depth profunditat assolida
+     */
+    public void addMove(Point p, int millis, long nodes, int depth) {
+        moves.add(new Move(p.x, p.y, millis, nodes, depth));
+    }
+
+    public void setWinner(PlayerType winner) {
+        this.winner = winner;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public String getPlayer1() {
+        return player1;
+    }
+
+    public String getPlayer2() {
+        return player2;
+    }
+
+    public PlayerType getWinner() {
+        return winner;
+    }
+
+    public List<Move> getMoves() {
+        return Collections.unmodifiableList(moves);
+    }
+
+    /**
+     * Reconstrueix la posició abans de la jugada {@code ply}.
+     * @param ply nombre de jugades a aplicar des del tauler buit
+     * @return estat de joc resultant
+     */
+    public HexGameStatus positionAt(int ply) {
+        HexGameStatus s = new HexGameStatus(size);
+        for (int i = 0; i < ply; i++) {
+            s.placeStone(moves.get(i).getPoint());
+        }
+        return s;
+    }
+
+    /**
+     * Serialitza el registre al final del buffer.
+     * @param buf buffer de destí, amb prou espai (vegeu {@link #encodedSize()})
+     */
+    public void writeTo(ByteBuffer buf) {
+        buf.putInt(MAGIC);
+        buf.put(VERSION);
+        buf.put((byte) size);
+        putString(buf, player1);
+        putString(buf, player2);
+        buf.put((byte) (winner == null ? 0 : winner.ordinal() + 1));
+        buf.putShort((short) moves.size());
+        for (Move m : moves) {
+            buf.put((byte) m.x);
+            buf.put((byte) m.y);
+            buf.putInt(m.millis);
+            buf.putLong(m.nodes);
+            buf.put((byte) m.depth);
+        }
+    }
+
+    /**
+     * @return nombre de bytes que ocupa el registre serialitzat
+     */
+    public int encodedSize() {
+        return 4 + 1 + 1
+                + 2 + player1.getBytes(StandardCharsets.UTF_8).length
+                + 2 + player2.getBytes(StandardCharsets.UTF_8).length
+                + 1 + 2 + moves.size() * MIDA_JUGADA;
+    }
+
+    /**
+     * Llegeix un registre des de la posició actual del buffer.
+     * @param buf buffer d'origen
+     * @return el registre llegit
+     * @throws IOException si les dades no tenen el format esperat
+     */
+    public static GameRecord readFrom(ByteBuffer buf) throws IOException {
+        if (buf.getInt() != MAGIC) {
+            throw new IOException("Registre de partida corrupte");
+        }
+        byte versio = buf.get();
+        if (versio != VERSION) {
+            throw new IOException("Versió de registre no suportada: " + versio);
+        }
+        int mida = buf.get();
+        GameRecord r = new GameRecord(mida, getString(buf), getString(buf));
+        int guanyador = buf.get();
+        r.winner = guanyador == 0 ? null : PlayerType.values()[guanyador - 1];
+        int n = buf.getShort();
+        for (int i = 0; i < n; i++) {
+            r.moves.add(new Move(buf.get(), buf.get(), buf.getInt(), buf.getLong(), buf.get()));
+        }
+        return r;
+    }
+
+    /**
+     * Afegeix registres al final d'un fitxer (el crea si no existeix).
+     * @param file fitxer de registres
+     * @param records registres a escriure
+     * @throws IOException si falla l'escriptura
+     */
+    public static void append(Path file, List<GameRecord> records) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(MIDA_BUFFER);
+            for (GameRecord r : records) {
+                if (r.encodedSize() > buf.remaining()) {
+                    buidaBuffer(ch, buf);
+                    if (r.encodedSize() > buf.capacity()) {
+                        buf = ByteBuffer.allocateDirect(r.encodedSize());
+                    }
+                }
+                r.writeTo(buf);
+            }
+            buidaBuffer(ch, buf);
+        }
+    }
+
+    /**
+     * Llegeix tots els registres d'un fitxer.
+     * @param file fitxer de registres
+     * @return registres en ordre d'escriptura
+     * @throws IOException si falla la lectura o el fitxer és corrupte
+     */
+    public static List<GameRecord> readAll(Path file) throws IOException {
+        List<GameRecord> res = new ArrayList<>();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long mida = ch.size();
+            if (mida > Integer.MAX_VALUE) {
+                throw new IOException("Fitxer de registres massa gran: " + file);
+            }
+            ByteBuffer buf = ByteBuffer.allocate((int) mida);
+            while (buf.hasRemaining()) {
+                if (ch.read(buf) < 0) {
+                    throw new EOFException();
+                }
+            }
+            buf.flip();
+            while (buf.hasRemaining()) {
+                res.add(readFrom(buf));
+            }
+        }
+        return res;
+    }
+
+    private static void buidaBuffer(FileChannel ch, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+        buf.clear();
+    }
+
+    private static void putString(ByteBuffer buf, String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        buf.putShort((short) b.length);
+        buf.put(b);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        byte[] b = new byte[buf.getShort()];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return player1 + " vs " + player2 + " (" + size + "x" + size + "), "
+                + moves.size() + " moves, winner " + winner;
+    }
+
+    /**
+     * Jugada registrada.
+     */
+    public static class Move {
+
+        private final int x;
+        private final int y;
+        private final int millis;
+        private final long nodes;
+        private final int depth;
+
+        Move(int x, int y, int millis, long nodes, int depth) {
+            this.x = x;
+            this.y = y;
+            this.millis = millis;
+            this.nodes = nodes;
+            this.depth = depth;
+        }
+
+        public Point getPoint() {
+            return new Point(x, y);
+        }
+
+        public int getMillis() {
+            return millis;
+        }
+
+        public long getNodes() {
+            return nodes;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+    }
+}
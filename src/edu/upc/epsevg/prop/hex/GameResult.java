@@ -0,0 +1,92 @@
+package edu.upc.epsevg.prop.hex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultats acumulats d'una sèrie de partides entre dos jugadors, amb el
+ * primer sempre com a PLAYER1. Es pot actualitzar des de diversos fils (per
+ * exemple, quan els resultats arriben dels treballadors de
+ * {@link MatchCoordinator}).
+ */
+public class GameResult {
+
+    private final String player1;
+    private final String player2;
+    private final List<PlayerType> results;
+
+    /**
+     * @param player1 nom del jugador que juga com a PLAYER1
+     * @param player2 nom del jugador que juga com a PLAYER2
+     */
+    public GameResult(String player1, String player2) {
+        this.player1 = player1;
+        this.player2 = player2;
+        this.results = new ArrayList<>();
+    }
+
+    /**
+     * Afegeix el resultat d'una partida.
+     * @param res guanyador (null si no n'hi ha cap)
+     */
+    public synchronized void update(PlayerType res) {
+        results.add(res);
+    }
+
+    /**
+     * @return guanyadors de les partides, en l'ordre en què s'han afegit
+     */
+    public synchronized List<PlayerType> getResults() {
+        return Collections.unmodifiableList(new ArrayList<>(results));
+    }
+
+    /**
+     * @param jugador PLAYER1 o PLAYER2
+     * @return partides guanyades pel jugador
+     */
+    public synchronized int getWins(PlayerType jugador) {
+        int wins = 0;
+        for (PlayerType c : results) {
+            if (c == jugador) {
+                wins++;
+            }
+        }
+        return wins;
+    }
+
+    public synchronized int getTies() {
+        return getGames() - getWins(PlayerType.PLAYER1) - getWins(PlayerType.PLAYER2);
+    }
+
+    public synchronized int getGames() {
+        return results.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        String res = "\n ================================================================="+
+                     "\n ================       RESULTS       ============================"+
+                     "\n =================================================================\n";
+        int wins1 = getWins(PlayerType.PLAYER1);
+        int loose1 = getWins(PlayerType.PLAYER2);
+        int ties1 = getTies();
+
+        res += "PLAYER 1 (" + pad(player1, 40) + "):\t wins " + wins1 + "\t ties:" + ties1 + "\t looses:" + loose1 + "\n";
+        res += "PLAYER 2 (" + pad(player2, 40) + "):\t wins " + loose1 + "\t ties:" + ties1 + "\t looses:" + wins1 + "\n";
+        return res;
+    }
+
+    private static String pad(String inputString, int length) {
+        if (inputString.length() >= length) {
+            return inputString;
+        }
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < length - inputString.length()) {
+            sb.append(' ');
+        }
+        sb.append(inputString);
+
+        return sb.toString();
+    }
+}
@@ -6,9 +6,16 @@ import edu.upc.epsevg.prop.hex.players.H_E_X_Player;
 import edu.upc.epsevg.prop.hex.players.HumanPlayer;
 import edu.upc.epsevg.prop.hex.players.PlayerMinimax;
 import edu.upc.epsevg.prop.hex.players.RandomPlayer;
+import edu.upc.epsevg.prop.hex.players.WarmUp;
+import java.awt.Point;
+import java.io.IOException;
 import java.lang.ref.WeakReference;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -25,7 +32,15 @@ public class HeadlessGame {
     private int gameCount;
     private int timeout;
     private int size;
+    private Path recordFile;
+    private List<GameRecord> records;
+    private long warmUpMillis = 3000;
+    private List<Point> opening = Collections.emptyList();
     
+    /**
+     * Ús: HeadlessGame [fitxer de registres]. Les partides només es desen
+     * ({@link GameRecord}) si es dona el fitxer.
+     */
     public static void main(String[] args) {
 
 
@@ -39,6 +54,7 @@ public class HeadlessGame {
    //     IPlayer player2 = new H_E_X_Player(2/*GB*/);
         
         HeadlessGame game = new HeadlessGame(player1, player2, 9, 5/*s timeout*/, 5/*games*/);
+        game.setRecordFile(args.length > 0 ? Paths.get(args[0]) : null);
         GameResult gr = game.start();
         System.out.println(gr);
 
@@ -52,23 +68,113 @@ public class HeadlessGame {
         players[1] = p2;
         this.gameCount = gameCount;
         this.timeout = timeout;
+        this.records = new ArrayList<>();
+    }
+
+    /**
+     * Desa totes les partides jugades, en format {@link GameRecord}, al
+     * final del fitxer indicat.
+     * @param recordFile fitxer de registres (null per no desar-les)
+     */
+    public void setRecordFile(Path recordFile) {
+        this.recordFile = recordFile;
+    }
+
+    /**
+     * @return registres de les partides jugades per aquesta instància
+     */
+    public List<GameRecord> getRecords() {
+        return records;
+    }
+
+    /**
+     * Jugades que es fan al principi de cada partida, abans que juguin els
+     * jugadors (es desen al registre amb temps i nodes 0).
+     * @param opening caselles de l'obertura, alternant els colors des de PLAYER1
+     */
+    public void setOpening(List<Point> opening) {
+        this.opening = new ArrayList<>(opening);
+    }
+
+    /**
+     * Temps màxim d'escalfament de cada jugador abans de la primera partida.
+     * @param warmUpMillis mil·lisegons (0 per no escalfar)
+     */
+    public void setWarmUpMillis(long warmUpMillis) {
+        this.warmUpMillis = warmUpMillis;
+    }
+
+    /**
+     * Escalfa els jugadors que ho permeten ({@link WarmUp}) i mostra quant hi triguen.
+     */
+    private void warmUp() {
+        if (warmUpMillis <= 0) {
+            return;
+        }
+        for (IPlayer p : players) {
+            if (p instanceof WarmUp) {
+                long ms = ((WarmUp) p).warmUp(size, warmUpMillis);
+                System.out.println("Warm-up " + p.getName() + ": " + ms + " ms");
+            }
+        }
     }
 
     public GameResult start() {
-        GameResult gr = new GameResult();
+        GameResult gr = new GameResult(players[0].getName(), players[1].getName());
+        warmUp();
         for (int i = 0; i < gameCount; i++) {
             //System.out.println(">" + i);
-            gr.update(play(players[0], players[1]));
+            GameRecord rec = play();
+            records.add(rec);
+            gr.update(rec.getWinner());
+            if (recordFile != null) {
+                try {
+                    GameRecord.append(recordFile, Collections.singletonList(rec));
+                } catch (IOException ex) {
+                    Logger.getLogger(HeadlessGame.class.getName()).log(Level.SEVERE, "No s'ha pogut desar la partida", ex);
+                }
+            }
         }
+        saveTables();
         return gr;
     }
 
+    /**
+     * Desa la part profunda de la taula de transposició dels jugadors que en
+     * tenen una de persistent ({@link HEXTEAM#setPersistentTable}), perquè
+     * la propera partida la pugui aprofitar.
+     */
+    private void saveTables() {
+        for (IPlayer p : players) {
+            if (p instanceof HEXTEAM) {
+                try {
+                    int entrades = ((HEXTEAM) p).saveTable();
+                    if (entrades > 0) {
+                        System.out.println("Taula de " + p.getName() + ": " + entrades + " entrades desades");
+                    }
+                } catch (IOException ex) {
+                    Logger.getLogger(HeadlessGame.class.getName()).log(Level.SEVERE, "No s'ha pogut desar la taula", ex);
+                }
+            }
+        }
+    }
+
     private class Result {
         public boolean ok;
+        public PlayerMove move;
+        public long millis;
     }
 
-    private PlayerType play(IPlayer player, IPlayer player0) {
+    private GameRecord play() {
         this.status = new HexGameStatus(size);
+        GameRecord rec = new GameRecord(size, players[0].getName(), players[1].getName());
+        for (Point p : opening) {
+            if (status.isGameOver()) {
+                break;
+            }
+            status.placeStone(p);
+            rec.addMove(p, 0, 0, 0);
+        }
 
         while (!this.status.isGameOver()) {
 
@@ -79,12 +185,15 @@ public class HeadlessGame {
             PlayerType cp = status.getCurrentPlayer();
             Thread t1 = new Thread(() -> {
                 PlayerMove m = null;
+                long inici = System.currentTimeMillis();
                 try {
                     m = players[cp == PlayerType.PLAYER1 ? 0 : 1].move(new HexGameStatus(status));
                 } catch(Exception ex) {
                     System.out.println("Excepció descontrolada al player:"+cp.name());
                     ex.printStackTrace();
                 }
+                r.millis = System.currentTimeMillis() - inici;
+                r.move = m;
                 if (m != null) {
                     status.placeStone(m.getPoint());
                 } else {
@@ -120,67 +229,18 @@ public class HeadlessGame {
             } catch (InterruptedException ex) {
                 Logger.getLogger(HeadlessGame.class.getName()).log(Level.SEVERE, null, ex);
             }
+            if (r.move != null) {
+                rec.addMove(r.move.getPoint(), (int) r.millis,
+                        r.move.getNumerOfNodesExplored(), r.move.getMaxDepthReached());
+            }
             // Netegem la memòria (for free!)
             gc();
             
         }
-        return status.winnerPlayer;
-    }
-
-    private class GameResult {
-
-        java.util.List<PlayerType> results;
-
-        public GameResult() {
-            results = new ArrayList<PlayerType>();
-
-        }
-
-        public void update(PlayerType res) {
-            results.add(res);
-        }
-
-        @Override
-        public String toString() {
-            String res = "\n ================================================================="+
-                         "\n ================       RESULTS       ============================"+
-                         "\n =================================================================\n";
-            int wins1 = 0, ties1 = 0, loose1 = 0;
-            for (PlayerType c : results) {
-                if (null == c) {
-                    ties1++;
-                } else {
-                    switch (c) {
-                        case PLAYER1:
-                            wins1++;
-                            break;
-                        default:
-                            loose1++;
-                            break;
-                    }
-                }
-            }
-
-            res += "PLAYER 1 (" + pad(players[0].getName(), 40) + "):\t wins " + wins1 + "\t ties:" + ties1 + "\t looses:" + loose1 + "\n";
-            res += "PLAYER 2 (" + pad(players[1].getName(), 40) + "):\t wins " + loose1 + "\t ties:" + ties1 + "\t looses:" + wins1 + "\n";
-            return res;
-        }
-
-        public String pad(String inputString, int length) {
-            if (inputString.length() >= length) {
-                return inputString;
-            }
-            StringBuilder sb = new StringBuilder();
-            while (sb.length() < length - inputString.length()) {
-                sb.append(' ');
-            }
-            sb.append(inputString);
-
-            return sb.toString();
-        }
+        rec.setWinner(status.winnerPlayer);
+        return rec;
     }
 
-    
     /**
      * This method guarantees that garbage collection is done unlike
      * <code>{@link System#gc()}</code>
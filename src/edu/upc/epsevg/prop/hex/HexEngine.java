@@ -0,0 +1,492 @@
+package edu.upc.epsevg.prop.hex;
+
+import edu.upc.epsevg.prop.hex.players.HEXTEAM;
+import edu.upc.epsevg.prop.hex.players.MultiPvAnalysis;
+import edu.upc.epsevg.prop.hex.players.WarmUp;
+import java.awt.Point;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Motor de text, a l'estil de GTP, que permet governar els jugadors des
+ * d'un gestor de partides extern o d'scripts sense recompilar cap main.
+ *
+ * Hi ha un sol jugador persistent per color, creat en arrencar amb
+ * {@link PlayerFactory}, de manera que el JIT escalfat (i, amb
+ * {@code --keep-tt}, la taula de transposició de HEXTEAM) es conserva d'una
+ * ordre a la següent. Amb {@code --keep-tt} la taula no s'esborra mai, ni
+ * entre partides: la taula per defecte, al heap, creix sense límit durant
+ * tota la sessió; per fitar-la cal una taula de mida fixa ({@code tt=mida}
+ * a la descripció del jugador).
+ *
+ * Cada ordre és una línia, opcionalment precedida d'un número
+ * d'identificació; la resposta és {@code = resultat} o {@code ? error},
+ * amb el mateix número, seguida d'una línia en blanc. Les caselles
+ * s'escriuen amb la lletra de la columna x i el número de la fila y
+ * ({@code a1} és (0,0)). {@code black} (o {@code 1}) és PLAYER1, que uneix
+ * els costats x = 0 i x = n-1, i {@code white} (o {@code 2}) és PLAYER2.
+ *
+ * Ordres: protocol_version, name, version, list_commands, boardsize N,
+ * clear_board, play color casella, genmove color, undo,
+ * time_settings principal byoyomi pedres, time_left color segons pedres, showboard,
+ * analyse [segons [variants]], quit.
+ * El rellotge de cada color descompta el temps de les seves jugades
+ * ({@code genmove}); {@code time_left} el corregeix amb el del gestor.
+ * Amb HEXTEAM, {@code analyse} dona les millors variants de cada iteració
+ * completada ({@link HEXTEAM#analyse}).
+ *
+ * Ús: HexEngine [jugador1] [jugador2] [--keep-tt] [--no-warmup]
+ */
+public class HexEngine {
+
+    private static final String[] ORDRES = {"protocol_version", "name", "version", "list_commands",
+        "boardsize", "clear_board", "play", "genmove", "undo", "time_settings", "time_left", "showboard", "analyse",
+        "quit"};
+    private static final int MIDA_INICIAL = 11;
+    private static final long TEMPS_INICIAL_MILLIS = 5000;
+    private static final long WARMUP_MILLIS = 3000;
+    private static final long MARGE_MILLIS = 200; // abans de cridar timeout() a un jugador que no para
+    private static final long TEMPS_MINIM_MILLIS = 100; // per jugada, encara que el rellotge s'hagi esgotat
+
+    private final IPlayer[] players;
+    private final PrintStream out;
+    private final ScheduledExecutorService rellotge;
+    private boolean warmUp = true;
+    private boolean escalfat;
+    private HexGameStatus status;
+    private final List<Point> history = new ArrayList<>();
+    private long mainMillis;
+    private long byoYomiMillis = TEMPS_INICIAL_MILLIS;
+    private int byoYomiStones = 1;
+    private final long[] tempsRestant = new long[2];  // del temps principal o del període de byo-yomi, per color
+    private final int[] pedresRestants = new int[2];  // del període de byo-yomi en curs (0: temps principal)
+
+    public static void main(String[] args) throws IOException {
+        String jugador1 = null;
+        String jugador2 = null;
+        boolean mantenirTaula = false;
+        boolean escalfa = true;
+        for (String a : args) {
+            if (a.equals("--keep-tt")) {
+                mantenirTaula = true;
+            } else if (a.equals("--no-warmup")) {
+                escalfa = false;
+            } else if (jugador1 == null) {
+                jugador1 = a;
+            } else {
+                jugador2 = a;
+            }
+        }
+        jugador1 = jugador1 == null ? "hexteam" : jugador1;
+        jugador2 = jugador2 == null ? jugador1 : jugador2;
+        int segons = (int) (TEMPS_INICIAL_MILLIS / 1000);
+        IPlayer p1 = PlayerFactory.create(jugador1, PlayerType.PLAYER1, segons);
+        IPlayer p2 = PlayerFactory.create(jugador2, PlayerType.PLAYER2, segons);
+        for (IPlayer p : new IPlayer[]{p1, p2}) {
+            if (p instanceof HEXTEAM) {
+                ((HEXTEAM) p).setKeepTranspositionTable(mantenirTaula);
+            }
+        }
+        HexEngine engine = new HexEngine(p1, p2, System.out);
+        engine.setWarmUp(escalfa);
+        engine.run(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @param player1 jugador de PLAYER1
+     * @param player2 jugador de PLAYER2
+     * @param out on s'escriuen les respostes
+     */
+    public HexEngine(IPlayer player1, IPlayer player2, PrintStream out) {
+        this.players = new IPlayer[]{player1, player2};
+        this.out = out;
+        this.rellotge = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "HexEngine timeout");
+            t.setDaemon(true);
+            return t;
+        });
+        this.status = new HexGameStatus(MIDA_INICIAL);
+        reiniciaRellotges();
+    }
+
+    /**
+     * Escalfa els jugadors ({@link WarmUp}) la primera vegada que es fixa la
+     * mida del tauler.
+     * @param warmUp fals per no escalfar-los
+     */
+    public void setWarmUp(boolean warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    /**
+     * Llegeix i respon ordres fins a {@code quit} o el final de l'entrada.
+     * @param in ordres, una per línia
+     * @throws IOException si falla la lectura
+     */
+    public void run(BufferedReader in) throws IOException {
+        String linia;
+        while ((linia = in.readLine()) != null) {
+            linia = linia.trim();
+            if (linia.isEmpty() || linia.startsWith("#")) {
+                continue;
+            }
+            String[] parts = linia.split("\\s+");
+            String id = "";
+            int k = 0;
+            if (parts[0].matches("\\d+")) {
+                id = parts[0];
+                k = 1;
+            }
+            if (k >= parts.length) {
+                continue;
+            }
+            String ordre = parts[k].toLowerCase();
+            String[] args = new String[parts.length - k - 1];
+            System.arraycopy(parts, k + 1, args, 0, args.length);
+            try {
+                String resultat = executa(ordre, args);
+                out.print("=" + id + (resultat.isEmpty() ? "" : " " + resultat) + "\n\n");
+            } catch (IllegalArgumentException | IllegalStateException ex) {
+                out.print("?" + id + " " + ex.getMessage() + "\n\n");
+            }
+            out.flush();
+            if (ordre.equals("quit")) {
+                break;
+            }
+        }
+        rellotge.shutdownNow();
+    }
+
+    /**
+     * Executa una ordre.
+     * @return text de la resposta (pot tenir diverses línies)
+     * @throws IllegalArgumentException si l'ordre o els arguments no són vàlids
+     * @throws IllegalStateException si l'ordre no es pot fer en la posició actual
+     */
+    String executa(String ordre, String[] args) {
+        switch (ordre) {
+            case "protocol_version":
+                return "2";
+            case "name":
+                return players[0].getName() + " vs " + players[1].getName();
+            case "version":
+                return "1";
+            case "list_commands":
+                return String.join("\n", ORDRES);
+            case "boardsize":
+                boardSize(Integer.parseInt(argument(args, 0)));
+                return "";
+            case "clear_board":
+                status = new HexGameStatus(status.getSize());
+                history.clear();
+                reiniciaRellotges();
+                return "";
+            case "play":
+                play(color(argument(args, 0)), casella(argument(args, 1)));
+                return "";
+            case "genmove":
+                return text(genmove(color(argument(args, 0))));
+            case "undo":
+                undo();
+                return "";
+            case "time_settings":
+                mainMillis = Long.parseLong(argument(args, 0)) * 1000;
+                byoYomiMillis = Long.parseLong(argument(args, 1)) * 1000;
+                byoYomiStones = Integer.parseInt(argument(args, 2));
+                reiniciaRellotges();
+                return "";
+            case "time_left":
+                timeLeft(color(argument(args, 0)), Long.parseLong(argument(args, 1)) * 1000,
+                        Integer.parseInt(argument(args, 2)));
+                return "";
+            case "showboard":
+                return "\n" + showBoard();
+            case "analyse":
+                return analyse(args.length > 0 ? Long.parseLong(args[0]) * 1000
+                        : tempsPerJugada(status.getCurrentPlayer()),
+                        args.length > 1 ? Integer.parseInt(args[1]) : 1);
+            case "quit":
+                return "";
+            default:
+                throw new IllegalArgumentException("unknown command");
+        }
+    }
+
+    private void boardSize(int n) {
+        if (n < 2 || n > 26) {
+            throw new IllegalArgumentException("unacceptable size");
+        }
+        status = new HexGameStatus(n);
+        history.clear();
+        reiniciaRellotges();
+        if (warmUp && !escalfat) {
+            for (IPlayer p : players) {
+                if (p instanceof WarmUp) {
+                    long ms = ((WarmUp) p).warmUp(n, WARMUP_MILLIS);
+                    System.err.println("Warm-up " + p.getName() + ": " + ms + " ms");
+                }
+            }
+            escalfat = true;
+        }
+    }
+
+    private void play(PlayerType color, Point p) {
+        if (status.isGameOver()) {
+            throw new IllegalStateException("game is over");
+        }
+        if (color != status.getCurrentPlayer()) {
+            throw new IllegalStateException("not " + nom(color) + "'s turn");
+        }
+        if (p.x >= status.getSize() || p.y >= status.getSize() || status.getPos(p) != 0) {
+            throw new IllegalArgumentException("illegal move");
+        }
+        status.placeStone(p);
+        history.add(p);
+    }
+
+    private Point genmove(PlayerType color) {
+        if (status.isGameOver()) {
+            throw new IllegalStateException("game is over");
+        }
+        if (color != status.getCurrentPlayer()) {
+            throw new IllegalStateException("not " + nom(color) + "'s turn");
+        }
+        long inici = System.currentTimeMillis();
+        PlayerMove m = cerca(tempsPerJugada(color));
+        descompta(color, System.currentTimeMillis() - inici);
+        if (m == null || m.getPoint() == null) {
+            throw new IllegalStateException("no move");
+        }
+        play(color, m.getPoint());
+        return m.getPoint();
+    }
+
+    private void undo() {
+        if (history.isEmpty()) {
+            throw new IllegalStateException("cannot undo");
+        }
+        history.remove(history.size() - 1);
+        status = new HexGameStatus(status.getSize());
+        for (Point p : history) {
+            status.placeStone(p);
+        }
+    }
+
+    /**
+     * Cerca la jugada del jugador que mou, sense jugar-la.
+     * @param variants nombre de millors jugades de l'arrel a mostrar
+     * @return informació de les iteracions i la millor jugada
+     */
+    private String analyse(long millis, int variants) {
+        if (status.isGameOver()) {
+            throw new IllegalStateException("game is over");
+        }
+        IPlayer p = jugadorQueMou();
+        StringBuilder sb = new StringBuilder();
+        if (p instanceof HEXTEAM) {
+            HEXTEAM h = (HEXTEAM) p;
+            h.setTimeoutMillis(millis);
+            MultiPvAnalysis analisi = h.analyse(new HexGameStatus(status), variants);
+            for (MultiPvAnalysis.Iteration it : analisi.getIterations()) {
+                for (int i = 0; i < it.getLines().size(); i++) {
+                    MultiPvAnalysis.Line l = it.getLines().get(i);
+                    sb.append(String.format("info depth %d multipv %d score %d nodes %d pv", it.getDepth(),
+                            i + 1, l.getScore(), it.getNodes()));
+                    for (Point q : l.getPv()) {
+                        sb.append(' ').append(text(q));
+                    }
+                    sb.append('\n');
+                }
+            }
+            MultiPvAnalysis.Iteration ultima = analisi.getLast();
+            Point millor = ultima == null || ultima.getLines().isEmpty() ? null : ultima.getLines().get(0).getMove();
+            sb.append("bestmove ").append(text(millor));
+            if (ultima != null) {
+                sb.append(" nodes ").append(ultima.getNodes()).append(" depth ").append(ultima.getDepth());
+            }
+            return "\n" + sb;
+        }
+        PlayerMove m = cerca(millis);
+        sb.append("bestmove ").append(m == null ? "none" : text(m.getPoint()));
+        if (m != null) {
+            sb.append(" nodes ").append(m.getNumerOfNodesExplored()).append(" depth ").append(m.getMaxDepthReached());
+        }
+        return "\n" + sb;
+    }
+
+    /**
+     * Fa pensar el jugador que mou amb el temps donat; si no para sol, se
+     * l'avisa amb {@link IPlayer#timeout()}.
+     */
+    private PlayerMove cerca(long millis) {
+        IPlayer p = jugadorQueMou();
+        if (p instanceof HEXTEAM) {
+            ((HEXTEAM) p).setTimeoutMillis(millis);
+        }
+        ScheduledFuture<?> avis = rellotge.schedule(p::timeout, millis + MARGE_MILLIS, TimeUnit.MILLISECONDS);
+        try {
+            return p.move(new HexGameStatus(status));
+        } finally {
+            avis.cancel(false);
+        }
+    }
+
+    /**
+     * Posa els rellotges dels dos colors a l'inici de {@code time_settings}:
+     * el temps principal o, si no n'hi ha, el primer període de byo-yomi.
+     */
+    private void reiniciaRellotges() {
+        for (int i = 0; i < 2; i++) {
+            tempsRestant[i] = mainMillis;
+            pedresRestants[i] = 0;
+            if (mainMillis <= 0 && teByoYomi()) {
+                tempsRestant[i] = byoYomiMillis;
+                pedresRestants[i] = byoYomiStones;
+            }
+        }
+    }
+
+    /**
+     * {@code time_left}: temps que queda a un color segons el gestor.
+     * @param pedres pedres que queden del període de byo-yomi (0 si encara és
+     *        temps principal)
+     */
+    private void timeLeft(PlayerType color, long millis, int pedres) {
+        if (millis < 0 || pedres < 0) {
+            throw new IllegalArgumentException("invalid time");
+        }
+        tempsRestant[index(color)] = millis;
+        pedresRestants[index(color)] = pedres;
+    }
+
+    /**
+     * Descompta del rellotge d'un color el temps d'una jugada. Quan s'acaba
+     * el temps principal o les pedres del període, comença un nou període de
+     * byo-yomi.
+     */
+    private void descompta(PlayerType color, long millis) {
+        int i = index(color);
+        tempsRestant[i] -= millis;
+        boolean periodeAcabat = pedresRestants[i] > 0 ? --pedresRestants[i] == 0 : tempsRestant[i] <= 0;
+        if (periodeAcabat && teByoYomi()) {
+            tempsRestant[i] = byoYomiMillis;
+            pedresRestants[i] = byoYomiStones;
+        }
+    }
+
+    /**
+     * Temps d'una jugada segons el rellotge del color: en byo-yomi, el que
+     * queda del període repartit entre les pedres que falten; amb temps
+     * principal, el que en queda repartit entre les jugades que falten (la
+     * meitat de les caselles buides), més la part d'una pedra de byo-yomi si
+     * n'hi ha. Sense cap límit ({@code time_settings} amb tot a 0), el temps
+     * inicial.
+     */
+    private long tempsPerJugada(PlayerType color) {
+        int i = index(color);
+        if (pedresRestants[i] > 0) {
+            return Math.max(TEMPS_MINIM_MILLIS, tempsRestant[i] / pedresRestants[i]);
+        }
+        if (mainMillis <= 0 && !teByoYomi()) {
+            return TEMPS_INICIAL_MILLIS;
+        }
+        int n = status.getSize();
+        int buides = n * n - history.size();
+        long temps = Math.max(0, tempsRestant[i]) / Math.max(1, buides / 2);
+        if (teByoYomi()) {
+            temps += byoYomiMillis / byoYomiStones;
+        }
+        return Math.max(TEMPS_MINIM_MILLIS, temps);
+    }
+
+    private boolean teByoYomi() {
+        return byoYomiMillis > 0 && byoYomiStones > 0;
+    }
+
+    private static int index(PlayerType color) {
+        return color == PlayerType.PLAYER1 ? 0 : 1;
+    }
+
+    String showBoard() {
+        int n = status.getSize();
+        StringBuilder sb = new StringBuilder("   ");
+        for (int x = 0; x < n; x++) {
+            sb.append(' ').append((char) ('a' + x));
+        }
+        sb.append('\n');
+        for (int y = 0; y < n; y++) {
+            for (int i = 0; i < y; i++) {
+                sb.append(' ');
+            }
+            sb.append(String.format("%2d ", y + 1));
+            for (int x = 0; x < n; x++) {
+                int v = status.getPos(x, y);
+                sb.append(' ').append(v == 1 ? 'X' : v == -1 ? 'O' : '.');
+            }
+            sb.append('\n');
+        }
+        sb.append("X: ").append(players[0].getName()).append(" (a-").append((char) ('a' + n - 1)).append(")")
+                .append(", O: ").append(players[1].getName()).append(" (1-").append(n).append(")")
+                .append(status.isGameOver() ? ", winner " + nom(status.GetWinner()) : ", to play " + nom(status.getCurrentPlayer()));
+        return sb.toString();
+    }
+
+    private IPlayer jugadorQueMou() {
+        return players[status.getCurrentPlayer() == PlayerType.PLAYER1 ? 0 : 1];
+    }
+
+    private static String argument(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("missing argument");
+        }
+        return args[i];
+    }
+
+    static PlayerType color(String text) {
+        switch (text.toLowerCase()) {
+            case "b":
+            case "black":
+            case "1":
+                return PlayerType.PLAYER1;
+            case "w":
+            case "white":
+            case "2":
+                return PlayerType.PLAYER2;
+            default:
+                throw new IllegalArgumentException("invalid color");
+        }
+    }
+
+    static Point casella(String text) {
+        String t = text.toLowerCase();
+        if (t.length() < 2 || t.charAt(0) < 'a' || t.charAt(0) > 'z') {
+            throw new IllegalArgumentException("invalid vertex");
+        }
+        try {
+            int y = Integer.parseInt(t.substring(1)) - 1;
+            if (y < 0) {
+                throw new IllegalArgumentException("invalid vertex");
+            }
+            return new Point(t.charAt(0) - 'a', y);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("invalid vertex");
+        }
+    }
+
+    static String text(Point p) {
+        return p == null ? "none" : "" + (char) ('a' + p.x) + (p.y + 1);
+    }
+
+    private static String nom(PlayerType color) {
+        return color == null ? "none" : color == PlayerType.PLAYER1 ? "black" : "white";
+    }
+}
@@ -0,0 +1,271 @@
+package edu.upc.epsevg.prop.hex;
+
+import java.awt.Point;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Coordinador d'una sèrie de partides repartida entre diversos processos o
+ * màquines ({@link MatchWorker}), per a enfrontaments massa llargs per a
+ * {@link HeadlessGame}.
+ *
+ * Escolta en un port TCP i dona una partida a cada treballador que en
+ * demana ({@link MatchProtocol}); els resultats s'acumulen en un
+ * {@link GameResult} i, opcionalment, es desen com a {@link GameRecord}. Si
+ * un treballador es desconnecta a mitja partida, la partida torna a la cua.
+ * Amb {@code --local-workers} llança ell mateix treballadors en aquesta
+ * màquina, amb el mateix {@code java} i classpath. Els jugadors no poden
+ * tenir taula persistent ({@code ttfile=}; vegeu {@link MatchWorker}).
+ *
+ * Ús: MatchCoordinator jugador1 jugador2 mida timeout partides [--port P]
+ *     [--local-workers N] [--openings jugades] [--seed S] [--record fitxer]
+ */
+public class MatchCoordinator {
+
+    private static final long ESPERA_FEINA_MILLIS = 500;
+
+    private final int size;
+    private final BlockingDeque<MatchProtocol.Job> pendents = new LinkedBlockingDeque<>();
+    private final CountDownLatch acabades;
+    private final GameResult result;
+    private final AtomicInteger errors = new AtomicInteger();
+    private final AtomicInteger connectats = new AtomicInteger(); // treballadors amb connexió oberta
+    private Path recordFile;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 5) {
+            System.out.println("Ús: MatchCoordinator jugador1 jugador2 mida timeout partides [--port P]"
+                    + " [--local-workers N] [--openings jugades] [--seed S] [--record fitxer]");
+            return;
+        }
+        int port = 0;
+        int locals = 0;
+        int obertura = 0;
+        long llavor = 1;
+        Path registre = null;
+        for (int i = 5; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--local-workers":
+                    locals = Integer.parseInt(args[++i]);
+                    break;
+                case "--openings":
+                    obertura = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    llavor = Long.parseLong(args[++i]);
+                    break;
+                case "--record":
+                    registre = Paths.get(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Opció desconeguda: " + args[i]);
+            }
+        }
+        MatchCoordinator c = new MatchCoordinator(args[0], args[1], Integer.parseInt(args[2]),
+                Integer.parseInt(args[3]), Integer.parseInt(args[4]), obertura, llavor);
+        c.setRecordFile(registre);
+        System.out.println(c.run(port, locals));
+    }
+
+    /**
+     * @param player1 descripció del jugador 1 ({@link PlayerFactory})
+     * @param player2 descripció del jugador 2
+     * @param size mida del tauler
+     * @param timeout temps per moviment, en segons
+     * @param games nombre de partides
+     * @param openingPlies jugades aleatòries d'obertura de cada partida
+     *        (reproduïbles a partir de la llavor i el número de partida)
+     * @param seed llavor de les obertures
+     * @throws IllegalArgumentException si algun jugador fa servir {@code ttfile=}
+     */
+    public MatchCoordinator(String player1, String player2, int size, int timeout, int games,
+            int openingPlies, long seed) {
+        MatchWorker.comprovaJugador(player1);
+        MatchWorker.comprovaJugador(player2);
+        this.size = size;
+        this.acabades = new CountDownLatch(games);
+        this.result = new GameResult(player1, player2);
+        for (int i = 0; i < games; i++) {
+            pendents.add(new MatchProtocol.Job(i, player1, player2, size, timeout,
+                    obertura(new Random(seed * 1_000_003L + i), openingPlies)));
+        }
+    }
+
+    /**
+     * Desa totes les partides rebudes al final del fitxer indicat.
+     * @param recordFile fitxer de registres (null per no desar-les)
+     */
+    public void setRecordFile(Path recordFile) {
+        this.recordFile = recordFile;
+    }
+
+    /**
+     * Reparteix totes les partides i espera els resultats. Amb treballadors
+     * locals, si tots han acabat (i no n'hi ha cap de connectat) mentre
+     * queden partides, la sèrie falla en lloc d'esperar per sempre; sense,
+     * s'esperen treballadors remots indefinidament.
+     * @param port port on escoltar (0 per triar-ne un de lliure)
+     * @param localWorkers treballadors a llançar en aquesta màquina
+     * @return resultats acumulats
+     * @throws IOException si no es pot obrir el port o llançar els treballadors,
+     *         o si els treballadors locals acaben abans de jugar totes les partides
+     * @throws InterruptedException si s'interromp l'espera
+     */
+    public GameResult run(int port, int localWorkers) throws IOException, InterruptedException {
+        List<Process> processos = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(port)) {
+            System.out.println("Coordinador escoltant al port " + server.getLocalPort());
+            Thread acceptador = new Thread(() -> accepta(server), "MatchCoordinator accept");
+            acceptador.setDaemon(true);
+            acceptador.start();
+            for (int i = 0; i < localWorkers; i++) {
+                processos.add(llancaTreballador(server.getLocalPort()));
+            }
+            while (!acabades.await(ESPERA_FEINA_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (localWorkers > 0 && connectats.get() == 0 && processos.stream().noneMatch(Process::isAlive)) {
+                    throw new IOException("Els treballadors han acabat i queden " + acabades.getCount()
+                            + " partides per jugar");
+                }
+            }
+        }
+        for (Process p : processos) {
+            if (!p.waitFor(10, TimeUnit.SECONDS)) {
+                p.destroy();
+            }
+        }
+        if (errors.get() > 0) {
+            System.out.println(errors.get() + " partides han fallat");
+        }
+        return result;
+    }
+
+    private void accepta(ServerSocket server) {
+        while (!server.isClosed()) {
+            try {
+                Socket s = server.accept();
+                Thread t = new Thread(() -> atenTreballador(s), "MatchCoordinator " + s.getRemoteSocketAddress());
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException ex) {
+                // S'ha tancat el servidor: ja no cal acceptar més treballadors
+            }
+        }
+    }
+
+    /**
+     * Conversa amb un treballador: rep resultats i li dona partides.
+     */
+    private void atenTreballador(Socket socket) {
+        MatchProtocol.Job enCurs = null;
+        connectats.incrementAndGet();
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            while (true) {
+                ByteBuffer missatge = MatchProtocol.receive(in);
+                byte tipus = missatge.get();
+                if (tipus == MatchProtocol.RESULT) {
+                    int id = missatge.getInt();
+                    registra(id, GameRecord.readFrom(missatge));
+                } else if (tipus == MatchProtocol.ERROR) {
+                    int id = missatge.getInt();
+                    System.out.println("Partida " + id + " fallida a " + s.getRemoteSocketAddress()
+                            + ": " + MatchProtocol.getString(missatge));
+                    errors.incrementAndGet();
+                    acabades.countDown();
+                } else if (tipus != MatchProtocol.READY) {
+                    throw new IOException("Missatge inesperat del treballador: " + tipus);
+                }
+                enCurs = seguent();
+                if (enCurs == null) {
+                    MatchProtocol.send(out, MatchProtocol.simple(MatchProtocol.BYE));
+                    return;
+                }
+                MatchProtocol.send(out, enCurs.encode());
+            }
+        } catch (IOException | RuntimeException ex) {
+            // Connexió perduda o missatge mal format: la partida torna a la cua
+            if (enCurs != null) {
+                System.out.println("Treballador perdut (" + ex + "), es torna a jugar la partida " + enCurs.id);
+                pendents.addFirst(enCurs);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connectats.decrementAndGet();
+        }
+    }
+
+    /**
+     * Espera la partida següent: mentre n'hi hagi alguna en curs, pot tornar
+     * a la cua si el seu treballador falla.
+     * @return la partida, o null si ja s'han acabat totes
+     */
+    private MatchProtocol.Job seguent() throws InterruptedException {
+        while (acabades.getCount() > 0) {
+            MatchProtocol.Job job = pendents.poll(ESPERA_FEINA_MILLIS, TimeUnit.MILLISECONDS);
+            if (job != null) {
+                return job;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void registra(int id, GameRecord rec) {
+        result.update(rec.getWinner());
+        if (recordFile != null) {
+            try {
+                GameRecord.append(recordFile, Collections.singletonList(rec));
+            } catch (IOException ex) {
+                Logger.getLogger(MatchCoordinator.class.getName()).log(Level.SEVERE, "No s'ha pogut desar la partida", ex);
+            }
+        }
+        System.out.println("Partida " + id + ": " + rec);
+        acabades.countDown();
+    }
+
+    private Process llancaTreballador(int port) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder pb = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                MatchWorker.class.getName(), "localhost", Integer.toString(port));
+        pb.redirectErrorStream(true);
+        pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        return pb.start();
+    }
+
+    private List<Point> obertura(Random rnd, int jugades) {
+        HexGameStatus joc = new HexGameStatus(size);
+        List<Point> res = new ArrayList<>();
+        for (int i = 0; i < jugades && !joc.isGameOver(); i++) {
+            List<MoveNode> moviments = joc.getMoves();
+            Point p = moviments.get(rnd.nextInt(moviments.size())).getPoint();
+            joc.placeStone(p);
+            res.add(p);
+        }
+        return res;
+    }
+}
@@ -0,0 +1,154 @@
+package edu.upc.epsevg.prop.hex;
+
+import java.awt.Point;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Protocol entre {@link MatchCoordinator} i {@link MatchWorker}.
+ *
+ * Cada missatge és un {@code int} amb la mida i el contingut, que comença
+ * per un byte de tipus. El treballador sempre demana feina: envia
+ * {@link #READY} en connectar-se i {@link #RESULT} (o {@link #ERROR}) en
+ * acabar cada partida, i el coordinador li respon amb {@link #JOB} o, si ja
+ * no en queden, {@link #BYE}.
+ * <pre>
+ *   READY:  byte tipus
+ *   RESULT: byte tipus, int partida, registre {@link GameRecord}
+ *   ERROR:  byte tipus, int partida, short + UTF-8 missatge
+ *   JOB:    byte tipus, int partida, short + UTF-8 jugador 1, short + UTF-8 jugador 2,
+ *           byte mida, int timeout (s), short jugades d'obertura, per jugada byte x, byte y
+ *   BYE:    byte tipus
+ * </pre>
+ */
+final class MatchProtocol {
+
+    static final byte READY = 1;
+    static final byte RESULT = 2;
+    static final byte ERROR = 3;
+    static final byte JOB = 10;
+    static final byte BYE = 11;
+
+    private static final int MIDA_MAXIMA = 16 << 20;
+
+    private MatchProtocol() {
+    }
+
+    /**
+     * Envia un missatge.
+     * @param out flux del sòcol
+     * @param buf contingut, entre la posició i el límit
+     */
+    static void send(DataOutputStream out, ByteBuffer buf) throws IOException {
+        out.writeInt(buf.remaining());
+        out.write(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+        out.flush();
+    }
+
+    /**
+     * Rep un missatge.
+     * @return contingut, a punt de llegir (el primer byte és el tipus)
+     */
+    static ByteBuffer receive(DataInputStream in) throws IOException {
+        int mida = in.readInt();
+        if (mida <= 0 || mida > MIDA_MAXIMA) {
+            throw new IOException("Missatge de mida no vàlida: " + mida);
+        }
+        byte[] b = new byte[mida];
+        in.readFully(b);
+        return ByteBuffer.wrap(b);
+    }
+
+    /**
+     * Missatge d'un sol byte (READY o BYE).
+     */
+    static ByteBuffer simple(byte tipus) {
+        return ByteBuffer.wrap(new byte[]{tipus});
+    }
+
+    static ByteBuffer result(int partida, GameRecord rec) {
+        ByteBuffer buf = ByteBuffer.allocate(1 + 4 + rec.encodedSize());
+        buf.put(RESULT).putInt(partida);
+        rec.writeTo(buf);
+        buf.flip();
+        return buf;
+    }
+
+    static ByteBuffer error(int partida, String missatge) {
+        byte[] b = missatge.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(1 + 4 + 2 + b.length);
+        buf.put(ERROR).putInt(partida).putShort((short) b.length).put(b);
+        buf.flip();
+        return buf;
+    }
+
+    static void putString(ByteBuffer buf, String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        buf.putShort((short) b.length);
+        buf.put(b);
+    }
+
+    static String getString(ByteBuffer buf) {
+        byte[] b = new byte[buf.getShort()];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Partida que el coordinador encarrega a un treballador.
+     */
+    static class Job {
+
+        final int id;
+        final String player1;
+        final String player2;
+        final int size;
+        final int timeout;
+        final List<Point> opening;
+
+        Job(int id, String player1, String player2, int size, int timeout, List<Point> opening) {
+            this.id = id;
+            this.player1 = player1;
+            this.player2 = player2;
+            this.size = size;
+            this.timeout = timeout;
+            this.opening = opening;
+        }
+
+        ByteBuffer encode() {
+            ByteBuffer buf = ByteBuffer.allocate(1 + 4 + 4 + 6 * (player1.length() + player2.length())
+                    + 1 + 4 + 2 + 2 * opening.size());
+            buf.put(JOB).putInt(id);
+            putString(buf, player1);
+            putString(buf, player2);
+            buf.put((byte) size).putInt(timeout).putShort((short) opening.size());
+            for (Point p : opening) {
+                buf.put((byte) p.x).put((byte) p.y);
+            }
+            buf.flip();
+            return buf;
+        }
+
+        /**
+         * @param buf missatge JOB, amb el tipus ja llegit
+         */
+        static Job decode(ByteBuffer buf) {
+            int id = buf.getInt();
+            String p1 = getString(buf);
+            String p2 = getString(buf);
+            int size = buf.get();
+            int timeout = buf.getInt();
+            int n = buf.getShort();
+            List<Point> opening = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                opening.add(new Point(buf.get(), buf.get()));
+            }
+            return new Job(id, p1, p2, size, timeout, opening);
+        }
+    }
+}
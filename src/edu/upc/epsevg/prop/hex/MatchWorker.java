@@ -0,0 +1,114 @@
+package edu.upc.epsevg.prop.hex;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * Treballador d'una partida distribuïda: es connecta a un
+ * {@link MatchCoordinator}, li demana partides i les juga amb el mateix bucle
+ * de {@link HeadlessGame} fins que el coordinador ja no en té més.
+ *
+ * Els jugadors es creen amb {@link PlayerFactory} a la primera partida i es
+ * fan servir per a totes les següents mentre el coordinador demani els
+ * mateixos jugadors, de manera que una taula de transposició gran
+ * ({@code tt=}) no es torna a reservar a cada partida; el JIT només s'escalfa
+ * abans de la primera.
+ *
+ * No s'admeten jugadors amb taula persistent ({@code ttfile=}): en acabar
+ * cada partida, cada treballador sobreescriuria el fitxer i només en
+ * quedarien les entrades de l'últim.
+ *
+ * Ús: MatchWorker host port
+ */
+public class MatchWorker {
+
+    private static final long WARMUP_MILLIS = 3000;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Ús: MatchWorker host port");
+            return;
+        }
+        int partides = run(args[0], Integer.parseInt(args[1]));
+        System.out.println("Treballador acabat: " + partides + " partides");
+    }
+
+    /**
+     * Juga partides del coordinador fins que no en queden.
+     * @param host màquina del coordinador
+     * @param port port del coordinador
+     * @return nombre de partides jugades
+     * @throws IOException si es perd la connexió
+     */
+    public static int run(String host, int port) throws IOException {
+        int partides = 0;
+        IPlayer[] jugadors = null;
+        String descripcio = null; // dels jugadors creats
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            MatchProtocol.send(out, MatchProtocol.simple(MatchProtocol.READY));
+            while (true) {
+                ByteBuffer missatge = MatchProtocol.receive(in);
+                byte tipus = missatge.get();
+                if (tipus == MatchProtocol.BYE) {
+                    break;
+                }
+                if (tipus != MatchProtocol.JOB) {
+                    throw new IOException("Missatge inesperat del coordinador: " + tipus);
+                }
+                MatchProtocol.Job job = MatchProtocol.Job.decode(missatge);
+                ByteBuffer resposta;
+                try {
+                    String d = job.player1 + '\n' + job.player2 + '\n' + job.timeout;
+                    if (!d.equals(descripcio)) {
+                        jugadors = creaJugadors(job);
+                        descripcio = d;
+                    }
+                    resposta = MatchProtocol.result(job.id, juga(job, jugadors, partides == 0));
+                } catch (RuntimeException ex) {
+                    resposta = MatchProtocol.error(job.id, String.valueOf(ex));
+                }
+                MatchProtocol.send(out, resposta);
+                partides++;
+            }
+        }
+        return partides;
+    }
+
+    /**
+     * Comprova que un jugador es pot fer servir en un treballador.
+     * @param spec descripció del jugador ({@link PlayerFactory})
+     * @throws IllegalArgumentException si fa servir una taula persistent
+     */
+    static void comprovaJugador(String spec) {
+        for (String opcio : spec.split(":")) {
+            if (opcio.startsWith("ttfile=")) {
+                throw new IllegalArgumentException("Els treballadors no admeten taules persistents: " + spec);
+            }
+        }
+    }
+
+    private static IPlayer[] creaJugadors(MatchProtocol.Job job) {
+        comprovaJugador(job.player1);
+        comprovaJugador(job.player2);
+        return new IPlayer[]{
+            PlayerFactory.create(job.player1, PlayerType.PLAYER1, job.timeout),
+            PlayerFactory.create(job.player2, PlayerType.PLAYER2, job.timeout)
+        };
+    }
+
+    private static GameRecord juga(MatchProtocol.Job job, IPlayer[] jugadors, boolean primera) {
+        HeadlessGame game = new HeadlessGame(jugadors[0], jugadors[1], job.size, job.timeout, 1);
+        game.setWarmUpMillis(primera ? WARMUP_MILLIS : 0);
+        game.setOpening(job.opening);
+        game.start();
+        return game.getRecords().get(0);
+    }
+}
@@ -0,0 +1,148 @@
+package edu.upc.epsevg.prop.hex;
+
+import edu.upc.epsevg.prop.hex.players.HEXTEAM;
+import edu.upc.epsevg.prop.hex.players.OpeningBook;
+import edu.upc.epsevg.prop.hex.players.SearchStats;
+import edu.upc.epsevg.prop.hex.players.Zobrist;
+import java.awt.Point;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Genera fora de línia un llibre d'obertures ({@link OpeningBook}).
+ *
+ * Per a cada color, el constructor recorre les primeres {@code K} jugades:
+ * a les posicions on li toca al llibre fa una cerca profunda amb HEXTEAM i
+ * desa la millor jugada; després hi aplica la jugada i expandeix totes les
+ * respostes de l'oponent. Les posicions equivalents per la rotació de 180°
+ * es cerquen una sola vegada. Cada nivell es cerca en paral·lel. HEXTEAM
+ * fa servir el llibre amb l'opció {@code book=fitxer} de {@link PlayerFactory}.
+ *
+ * Ús: OpeningBookBuilder fitxer [mida] [jugades K] [profunditat] [fils]
+ */
+public class OpeningBookBuilder {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Ús: OpeningBookBuilder fitxer [mida] [jugades K] [profunditat] [fils]");
+            return;
+        }
+        Path fitxer = Paths.get(args[0]);
+        int mida = args.length > 1 ? Integer.parseInt(args[1]) : 9;
+        int jugades = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        int profunditat = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+        int fils = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        long inici = System.currentTimeMillis();
+        List<OpeningBook.Entry> entrades = construeix(mida, jugades, profunditat, fils);
+        OpeningBook.write(fitxer, mida, entrades);
+        System.out.println(entrades.size() + " posicions desades a " + fitxer
+                + " en " + (System.currentTimeMillis() - inici) / 1000 + " s");
+    }
+
+    /**
+     * @return entrades del llibre ordenades per clau canònica
+     */
+    static List<OpeningBook.Entry> construeix(int mida, int jugades, int profunditat, int fils) throws Exception {
+        // Posicions pendents de cercar, per nombre de pedres i clau canònica
+        TreeMap<Integer, Map<Long, HexGameStatus>> pendents = new TreeMap<>();
+        HexGameStatus buit = new HexGameStatus(mida);
+        afegeix(pendents, 0, buit);
+        if (jugades > 1) {
+            for (MoveNode m : buit.getMoves()) {
+                HexGameStatus fill = new HexGameStatus(buit);
+                fill.placeStone(m.getPoint());
+                afegeix(pendents, 1, fill);
+            }
+        }
+
+        Map<Long, OpeningBook.Entry> llibre = new HashMap<>();
+        ExecutorService pool = Executors.newFixedThreadPool(fils);
+        try {
+            while (!pendents.isEmpty()) {
+                Map.Entry<Integer, Map<Long, HexGameStatus>> nivell = pendents.pollFirstEntry();
+                int ply = nivell.getKey();
+                System.out.println("ply " + ply + ": " + nivell.getValue().size() + " posicions");
+
+                List<Future<HexGameStatus>> cerques = new ArrayList<>();
+                for (HexGameStatus posicio : nivell.getValue().values()) {
+                    cerques.add(pool.submit((Callable<HexGameStatus>) () -> {
+                        OpeningBook.Entry e = cerca(posicio, profunditat);
+                        if (e == null) {
+                            return null;
+                        }
+                        synchronized (llibre) {
+                            llibre.put(e.getKey(), e);
+                        }
+                        HexGameStatus despres = new HexGameStatus(posicio);
+                        int n = posicio.getSize();
+                        boolean rotada = Long.compareUnsigned(Zobrist.clauRotada(posicio), Zobrist.clau(posicio)) < 0;
+                        int x = e.getCell() / n, y = e.getCell() % n;
+                        despres.placeStone(rotada ? new Point(n - 1 - x, n - 1 - y) : new Point(x, y));
+                        return despres;
+                    }));
+                }
+                for (Future<HexGameStatus> f : cerques) {
+                    HexGameStatus despres = f.get();
+                    if (despres == null || ply + 2 >= jugades || despres.isGameOver()) {
+                        continue;
+                    }
+                    for (MoveNode m : despres.getMoves()) {
+                        HexGameStatus resposta = new HexGameStatus(despres);
+                        resposta.placeStone(m.getPoint());
+                        afegeix(pendents, ply + 2, resposta);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        List<OpeningBook.Entry> res = new ArrayList<>(llibre.values());
+        res.sort((a, b) -> Long.compareUnsigned(a.getKey(), b.getKey()));
+        return res;
+    }
+
+    private static void afegeix(TreeMap<Integer, Map<Long, HexGameStatus>> pendents, int ply, HexGameStatus joc) {
+        pendents.computeIfAbsent(ply, k -> new LinkedHashMap<>()).putIfAbsent(clauCanonica(joc), joc);
+    }
+
+    private static long clauCanonica(HexGameStatus joc) {
+        long k = Zobrist.clau(joc);
+        long kr = Zobrist.clauRotada(joc);
+        return Long.compareUnsigned(kr, k) < 0 ? kr : k;
+    }
+
+    /**
+     * Cerca la posició a profunditat fixa i en retorna l'entrada canònica.
+     * @return l'entrada, o null si el jugador no ha trobat cap jugada
+     */
+    private static OpeningBook.Entry cerca(HexGameStatus posicio, int profunditat) {
+        HEXTEAM jugador = new HEXTEAM(profunditat, posicio.getCurrentPlayer(), Long.MAX_VALUE);
+        PlayerMove m = jugador.move(new HexGameStatus(posicio));
+        List<SearchStats.Iteration> its = jugador.getLastSearchStats().getIterations();
+        int puntuacio = its.isEmpty() ? 0 : its.get(its.size() - 1).getScore();
+
+        int n = posicio.getSize();
+        Point p = m.getPoint();
+        if (p == null) {
+            return null;
+        }
+        long clau = Zobrist.clau(posicio);
+        long clauRotada = Zobrist.clauRotada(posicio);
+        if (Long.compareUnsigned(clauRotada, clau) < 0) {
+            return new OpeningBook.Entry(clauRotada, (n - 1 - p.x) * n + (n - 1 - p.y), m.getMaxDepthReached(), puntuacio);
+        }
+        return new OpeningBook.Entry(clau, p.x * n + p.y, m.getMaxDepthReached(), puntuacio);
+    }
+}
@@ -0,0 +1,124 @@
+package edu.upc.epsevg.prop.hex;
+
+import edu.upc.epsevg.prop.hex.players.PatternPolicy;
+import java.awt.Point;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Entrena fora de línia una {@link PatternPolicy} a partir de partides
+ * desades per HeadlessGame ({@link GameRecord}). HEXTEAM fa servir la
+ * política amb l'opció {@code policy=fitxer} de {@link PlayerFactory}.
+ *
+ * Ajusta un model logit condicional: la probabilitat de jugar una casella és
+ * proporcional a {@code exp(pes del seu patró)} entre totes les caselles
+ * buides. Els pesos s'ajusten per ascens de gradient estocàstic de la
+ * log-versemblança amb regularització L2.
+ *
+ * Ús: PatternTrainer sortida.pat [èpoques] [ritme] fitxer.hexr...
+ */
+public class PatternTrainer {
+
+    private static final double L2 = 1e-4;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.out.println("Ús: PatternTrainer sortida.pat èpoques ritme fitxer.hexr...");
+            return;
+        }
+        int epoques = Integer.parseInt(args[1]);
+        double ritme = Double.parseDouble(args[2]);
+
+        List<Exemple> exemples = new ArrayList<>();
+        for (int i = 3; i < args.length; i++) {
+            for (GameRecord partida : GameRecord.readAll(Paths.get(args[i]))) {
+                afegeixExemples(partida, exemples);
+            }
+        }
+        System.out.println(exemples.size() + " posicions d'entrenament");
+
+        PatternPolicy politica = new PatternPolicy();
+        Random rnd = new Random(1);
+        for (int e = 0; e < epoques; e++) {
+            Collections.shuffle(exemples, rnd);
+            double logVersemblanca = 0;
+            for (Exemple ex : exemples) {
+                logVersemblanca += pas(politica.getWeights(), ex, ritme);
+            }
+            System.out.printf("època %d: log-versemblança mitjana %.4f%n", e, logVersemblanca / exemples.size());
+        }
+        politica.save(Paths.get(args[0]));
+    }
+
+    /**
+     * Converteix cada jugada d'una partida en un exemple: els patrons de
+     * totes les caselles buides i l'índex de la jugada feta.
+     */
+    private static void afegeixExemples(GameRecord partida, List<Exemple> exemples) {
+        int n = partida.getSize();
+        byte[] tauler = new byte[n * n];
+        int color = 1;
+        for (GameRecord.Move m : partida.getMoves()) {
+            Point p = m.getPoint();
+            int jugada = p.x * n + p.y;
+            int[] patrons = new int[tauler.length];
+            int k = 0;
+            int triat = -1;
+            for (int c = 0; c < tauler.length; c++) {
+                if (tauler[c] == 0) {
+                    if (c == jugada) {
+                        triat = k;
+                    }
+                    patrons[k++] = PatternPolicy.patro(tauler, n, c, color);
+                }
+            }
+            if (triat >= 0 && k > 1) {
+                exemples.add(new Exemple(Arrays.copyOf(patrons, k), triat));
+            }
+            tauler[jugada] = (byte) color;
+            color = -color;
+        }
+    }
+
+    /**
+     * Un pas de gradient sobre un exemple.
+     * @return log-probabilitat de la jugada triada abans del pas
+     */
+    private static double pas(float[] pesos, Exemple ex, double ritme) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int codi : ex.patrons) {
+            max = Math.max(max, pesos[codi]);
+        }
+        double[] prob = new double[ex.patrons.length];
+        double suma = 0;
+        for (int i = 0; i < prob.length; i++) {
+            prob[i] = Math.exp(pesos[ex.patrons[i]] - max);
+            suma += prob[i];
+        }
+        double logP = pesos[ex.patrons[ex.triat]] - max - Math.log(suma);
+        for (int i = 0; i < prob.length; i++) {
+            int codi = ex.patrons[i];
+            double gradient = (i == ex.triat ? 1 : 0) - prob[i] / suma;
+            pesos[codi] += (float) (ritme * (gradient - L2 * pesos[codi]));
+        }
+        return logP;
+    }
+
+    /**
+     * Posició d'entrenament.
+     */
+    private static class Exemple {
+
+        final int[] patrons;
+        final int triat;
+
+        Exemple(int[] patrons, int triat) {
+            this.patrons = patrons;
+            this.triat = triat;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package edu.upc.epsevg.prop.hex;
+
+import edu.upc.epsevg.prop.hex.players.H_E_X_Player;
+import edu.upc.epsevg.prop.hex.players.HEXTEAM;
+import edu.upc.epsevg.prop.hex.players.HeuristicWeights;
+import edu.upc.epsevg.prop.hex.players.OffHeapTranspositionTable;
+import edu.upc.epsevg.prop.hex.players.OpeningBook;
+import edu.upc.epsevg.prop.hex.players.PatternPolicy;
+import edu.upc.epsevg.prop.hex.players.PlayerMinimax;
+import edu.upc.epsevg.prop.hex.players.RandomPlayer;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Crea jugadors a partir d'una descripció textual, per a les eines de línia
+ * d'ordres (bench, replay, partides massives...).
+ *
+ * Formats acceptats:
+ * <ul>
+ * <li>{@code hexteam[:profunditat[:tt=mida]]}, amb una taula de
+ * transposició fora del heap de la mida donada (p. ex. {@code tt=2g}; la
+ * JVM l'ha de permetre amb {@code -XX:MaxDirectMemorySize}, que per defecte
+ * val el mateix que {@code -Xmx}, sumant totes les taules del procés) i/o
+ * una taula persistent ({@code ttfile=fitxer}, amb les entrades de
+ * profunditat {@value #PROFUNDITAT_TAULA} o més) i/o un llibre d'obertures
+ * ({@code book=fitxer}, generat per {@link OpeningBookBuilder}) i/o una
+ * política de patrons per ordenar les jugades ({@code policy=fitxer},
+ * entrenada per {@link PatternTrainer})</li>
+ * <li>{@code minimax[:profunditat]}</li>
+ * <li>{@code random}</li>
+ * <li>{@code hexplayer[:GB]} (jugador de referència del professor)</li>
+ * </ul>
+ * HEXTEAM i minimax accepten a més l'opció {@code weights=fitxer}, després
+ * de la profunditat, amb els pesos de l'heurística ({@link HeuristicWeights}).
+ */
+public class PlayerFactory {
+
+    private static final int PROFUNDITAT_HEXTEAM = 64;
+    private static final int PROFUNDITAT_MINIMAX = 3;
+    private static final int PROFUNDITAT_TAULA = 3;
+
+    private PlayerFactory() {
+    }
+
+    /**
+     * @param spec descripció del jugador
+     * @param tipus color amb què jugarà
+     * @param timeoutSeconds temps per moviment de la partida
+     * @return el jugador creat
+     * @throws IllegalArgumentException si la descripció no és vàlida
+     */
+    public static IPlayer create(String spec, PlayerType tipus, int timeoutSeconds) {
+        String[] parts = spec.trim().split(":");
+        String nom = parts[0].toLowerCase();
+        switch (nom) {
+            case "hexteam": {
+                HEXTEAM p = new HEXTEAM(argument(parts, PROFUNDITAT_HEXTEAM), tipus, timeoutSeconds * 1000L,
+                        pesos(parts));
+                for (int i = 2; i < parts.length; i++) {
+                    if (parts[i].startsWith("weights=")) {
+                        continue;
+                    } else if (parts[i].startsWith("tt=")) {
+                        p.setTranspositionTable(new OffHeapTranspositionTable(
+                                OffHeapTranspositionTable.parseSize(parts[i].substring(3)), true));
+                    } else if (parts[i].startsWith("book=")) {
+                        try {
+                            p.setOpeningBook(OpeningBook.open(Paths.get(parts[i].substring(5))));
+                        } catch (IOException ex) {
+                            throw new IllegalArgumentException("No es pot obrir el llibre: " + parts[i].substring(5), ex);
+                        }
+                    } else if (parts[i].startsWith("policy=")) {
+                        try {
+                            p.setPatternPolicy(PatternPolicy.load(Paths.get(parts[i].substring(7))));
+                        } catch (IOException ex) {
+                            throw new IllegalArgumentException("No es pot llegir la política: " + parts[i].substring(7), ex);
+                        }
+                    } else if (parts[i].startsWith("ttfile=")) {
+                        try {
+                            p.setPersistentTable(Paths.get(parts[i].substring(7)), PROFUNDITAT_TAULA);
+                        } catch (IOException ex) {
+                            throw new IllegalArgumentException("No es pot obrir la taula: " + parts[i].substring(7), ex);
+                        }
+                    } else {
+                        throw new IllegalArgumentException("Opció desconeguda: " + parts[i]);
+                    }
+                }
+                return p;
+            }
+            case "minimax":
+                return new PlayerMinimax(argument(parts, PROFUNDITAT_MINIMAX), tipus, pesos(parts));
+            case "random":
+                return new RandomPlayer(parts.length > 1 ? parts[1] : "Random");
+            case "hexplayer":
+                return new H_E_X_Player(argument(parts, 2));
+            default:
+                throw new IllegalArgumentException("Jugador desconegut: " + spec);
+        }
+    }
+
+    /**
+     * @return pesos de l'opció {@code weights=fitxer}, o els originals si no hi és
+     */
+    private static HeuristicWeights pesos(String[] parts) {
+        for (int i = 2; i < parts.length; i++) {
+            if (parts[i].startsWith("weights=")) {
+                try {
+                    return HeuristicWeights.load(Paths.get(parts[i].substring(8)));
+                } catch (IOException ex) {
+                    throw new IllegalArgumentException("No es poden llegir els pesos: " + parts[i].substring(8), ex);
+                }
+            }
+        }
+        return HeuristicWeights.DEFAULT;
+    }
+
+    private static int argument(String[] parts, int perDefecte) {
+        return parts.length > 1 ? Integer.parseInt(parts[1]) : perDefecte;
+    }
+}
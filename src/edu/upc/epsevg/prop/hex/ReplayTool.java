@@ -0,0 +1,97 @@
+package edu.upc.epsevg.prop.hex;
+
+import java.awt.Point;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Torna a analitzar, en paral·lel, totes les posicions d'una partida desada
+ * per {@link HeadlessGame} amb el jugador que es vulgui, per reproduir fora
+ * de línia els moviments lents o perdedors. Com a les partides, si un
+ * jugador no para sol quan s'acaba el temps, se l'avisa amb
+ * {@link IPlayer#timeout()}.
+ *
+ * Ús: ReplayTool fitxer.hexr [partida] [jugador] [timeout s] [fils]
+ */
+public class ReplayTool {
+
+    private static final long MARGE_MILLIS = 200; // abans de cridar timeout() a un jugador que no para
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Ús: ReplayTool fitxer.hexr [partida] [jugador] [timeout s] [fils]");
+            return;
+        }
+        List<GameRecord> partides = GameRecord.readAll(Paths.get(args[0]));
+        int index = args.length > 1 ? Integer.parseInt(args[1]) : partides.size() - 1;
+        String jugador = args.length > 2 ? args[2] : "hexteam";
+        int timeout = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        int fils = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        GameRecord partida = partides.get(index);
+        System.out.println("Partida " + index + ": " + partida);
+
+        ExecutorService pool = Executors.newFixedThreadPool(fils);
+        ScheduledExecutorService rellotge = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ReplayTool timeout");
+            t.setDaemon(true);
+            return t;
+        });
+        // Un jugador de cada color per fil: crear-ne un per posició tornaria a
+        // reservar la taula de transposició (tt=) a cada jugada
+        ThreadLocal<IPlayer[]> jugadorsFil = ThreadLocal.withInitial(() -> new IPlayer[2]);
+        List<Future<String>> resultats = new ArrayList<>();
+        for (int ply = 0; ply < partida.getMoves().size(); ply++) {
+            final int p = ply;
+            resultats.add(pool.submit(() -> analitza(partida, p, jugadorsFil.get(), jugador, timeout, rellotge)));
+        }
+        for (Future<String> f : resultats) {
+            System.out.println(f.get());
+        }
+        pool.shutdown();
+        rellotge.shutdownNow();
+    }
+
+    /**
+     * Cerca la posició anterior a la jugada {@code ply} amb el jugador del fil.
+     * @param jugadors jugadors del fil per color (es creen la primera vegada)
+     * @return línia de resum comparant la jugada original amb la nova
+     */
+    private static String analitza(GameRecord partida, int ply, IPlayer[] jugadors, String spec, int timeout,
+            ScheduledExecutorService rellotge) {
+        HexGameStatus posicio = partida.positionAt(ply);
+        int color = posicio.getCurrentPlayer() == PlayerType.PLAYER1 ? 0 : 1;
+        if (jugadors[color] == null) {
+            jugadors[color] = PlayerFactory.create(spec, posicio.getCurrentPlayer(), timeout);
+        }
+        IPlayer jugador = jugadors[color];
+        GameRecord.Move original = partida.getMoves().get(ply);
+
+        long inici = System.currentTimeMillis();
+        ScheduledFuture<?> avis = rellotge.schedule(jugador::timeout, timeout * 1000L + MARGE_MILLIS,
+                TimeUnit.MILLISECONDS);
+        PlayerMove m;
+        try {
+            m = jugador.move(new HexGameStatus(posicio));
+        } finally {
+            avis.cancel(false);
+        }
+        long millis = System.currentTimeMillis() - inici;
+
+        Point nou = m == null ? null : m.getPoint();
+        Point vell = original.getPoint();
+        return String.format("%3d %s  played (%d,%d) %6d ms %10d nodes d%-2d | %s %s %6d ms %10d nodes d%-2d%s",
+                ply, posicio.getCurrentPlayer() == PlayerType.PLAYER1 ? "P1" : "P2",
+                vell.x, vell.y, original.getMillis(), original.getNodes(), original.getDepth(),
+                jugador.getName(), nou == null ? "-" : "(" + nou.x + "," + nou.y + ")", millis,
+                m == null ? 0 : m.getNumerOfNodesExplored(), m == null ? 0 : m.getMaxDepthReached(),
+                vell.equals(nou) ? "" : "  *");
+    }
+}
@@ -0,0 +1,491 @@
+package edu.upc.epsevg.prop.hex;
+
+import edu.upc.epsevg.prop.hex.players.HEXTEAM;
+import edu.upc.epsevg.prop.hex.players.SearchStats;
+import java.awt.Point;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Genera partides d'autojoc en paral·lel per entrenar i ajustar els
+ * jugadors.
+ *
+ * Cada partida comença amb unes quantes jugades aleatòries (reproduïbles a
+ * partir de la llavor i el número de partida) i després la juguen els dos
+ * jugadors. Cada fil crea els seus jugadors una sola vegada i els fa servir
+ * per a totes les seves partides, de manera que una taula de transposició
+ * gran ({@code tt=}) no es torna a reservar a cada partida. Els fils que juguen deixen cada partida serialitzada en una cua
+ * acotada (si l'escriptor no dona l'abast, s'esperen) i un sol fil les escriu
+ * en fragments GZIP de {@code partides/fragment} partides cadascun.
+ *
+ * Un fragment s'escriu primer com a {@code .tmp} i només quan està complet es
+ * renomena i s'afegeix una línia al fitxer de progrés amb les partides que
+ * conté. Si el procés s'atura, en tornar-lo a llançar amb el mateix
+ * directori s'esborren els fragments a mitges i només es juguen les partides
+ * que no són a cap fragment acabat.
+ *
+ * Format de cada partida dins el fragment (big-endian):
+ * <pre>
+ *   int    MAGIC ("HEXS")
+ *   byte   versió
+ *   byte   mida del tauler
+ *   int    número de partida
+ *   byte   guanyador (0 cap, 1 PLAYER1, 2 PLAYER2)
+ *   byte   jugades aleatòries d'obertura
+ *   short  nombre de jugades
+ *   per jugada: byte x, byte y, byte profunditat, long nodes,
+ *               byte 1 si hi ha puntuació, int puntuació (de qui mou)
+ * </pre>
+ * Les posicions es reconstrueixen aplicant les jugades des del tauler buit.
+ *
+ * Ús: SelfPlayGenerator directori partides [jugador1] [jugador2] [mida]
+ *     [timeout s] [fils] [jugades d'obertura] [partides/fragment] [llavor]
+ */
+public class SelfPlayGenerator {
+
+    static final int MAGIC = 0x48455853; // "HEXS"
+    private static final byte VERSION = 1;
+    private static final String PROGRES = "progress.txt";
+    private static final String PREFIX = "selfplay-";
+    private static final String EXTENSIO = ".hexs.gz";
+    private static final byte[] FINAL = new byte[0];
+
+    private final Path directori;
+    private final String jugador1;
+    private final String jugador2;
+    private final int size;
+    private final int timeout;
+    private final int openingPlies;
+    private final long seed;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Ús: SelfPlayGenerator directori partides [jugador1] [jugador2] [mida]"
+                    + " [timeout s] [fils] [jugades d'obertura] [partides/fragment] [llavor]");
+            return;
+        }
+        Path directori = Paths.get(args[0]);
+        int partides = Integer.parseInt(args[1]);
+        String jugador1 = args.length > 2 ? args[2] : "hexteam";
+        String jugador2 = args.length > 3 ? args[3] : "hexteam";
+        int mida = args.length > 4 ? Integer.parseInt(args[4]) : 9;
+        int timeout = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+        int fils = args.length > 6 ? Integer.parseInt(args[6]) : Runtime.getRuntime().availableProcessors();
+        int obertura = args.length > 7 ? Integer.parseInt(args[7]) : 4;
+        int perFragment = args.length > 8 ? Integer.parseInt(args[8]) : 100;
+        long llavor = args.length > 9 ? Long.parseLong(args[9]) : 1;
+
+        SelfPlayGenerator g = new SelfPlayGenerator(directori, jugador1, jugador2, mida, timeout, obertura, llavor);
+        int jugades = g.run(partides, fils, perFragment);
+        System.out.println(jugades + " partides noves a " + directori);
+    }
+
+    /**
+     * @param directori on es deixen els fragments i el fitxer de progrés
+     * @param jugador1 descripció del primer jugador ({@link PlayerFactory})
+     * @param jugador2 descripció del segon jugador
+     * @param size mida del tauler
+     * @param timeout temps per moviment, en segons
+     * @param openingPlies jugades aleatòries abans que juguin els jugadors
+     * @param seed llavor de les obertures
+     */
+    public SelfPlayGenerator(Path directori, String jugador1, String jugador2, int size, int timeout,
+            int openingPlies, long seed) {
+        this.directori = directori;
+        this.jugador1 = jugador1;
+        this.jugador2 = jugador2;
+        this.size = size;
+        this.timeout = timeout;
+        this.openingPlies = openingPlies;
+        this.seed = seed;
+    }
+
+    /**
+     * Juga les partides que falten fins a {@code partides}.
+     * @param partides nombre total de partides del corpus
+     * @param fils fils que juguen partides alhora
+     * @param perFragment partides per fragment
+     * @return nombre de partides jugades en aquesta execució
+     * @throws IOException si falla l'escriptura
+     * @throws InterruptedException si s'interromp l'espera
+     */
+    public int run(int partides, int fils, int perFragment) throws IOException, InterruptedException {
+        Files.createDirectories(directori);
+        BitSet fetes = new BitSet();
+        int fragment = llegeixProgres(fetes);
+        esborraTemporals();
+
+        BlockingQueue<byte[]> cua = new ArrayBlockingQueue<>(Math.max(2, fils * 2));
+        Escriptor escriptor = new Escriptor(cua, fragment, perFragment);
+        Thread filEscriptor = new Thread(escriptor, "SelfPlay writer");
+        filEscriptor.start();
+
+        ExecutorService pool = Executors.newFixedThreadPool(fils);
+        ScheduledExecutorService rellotge = Executors.newSingleThreadScheduledExecutor();
+        AtomicInteger jugades = new AtomicInteger();
+        ThreadLocal<IPlayer[]> jugadorsFil = ThreadLocal.withInitial(() -> new IPlayer[]{
+            PlayerFactory.create(jugador1, PlayerType.PLAYER1, timeout),
+            PlayerFactory.create(jugador2, PlayerType.PLAYER2, timeout)
+        });
+        for (int i = 0; i < partides; i++) {
+            if (fetes.get(i)) {
+                continue;
+            }
+            final int partida = i;
+            pool.execute(() -> {
+                try {
+                    cua.put(juga(partida, jugadorsFil.get(), rellotge));
+                    jugades.incrementAndGet();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        rellotge.shutdownNow();
+        cua.put(FINAL);
+        filEscriptor.join();
+        if (escriptor.error != null) {
+            throw escriptor.error;
+        }
+        return jugades.get();
+    }
+
+    /**
+     * Juga una partida completa.
+     * @param jugadors jugadors del fil (PLAYER1 i PLAYER2)
+     * @return la partida serialitzada
+     */
+    private byte[] juga(int partida, IPlayer[] jugadors, ScheduledExecutorService rellotge) {
+        Random rnd = new Random(seed * 1_000_003L + partida);
+        HexGameStatus joc = new HexGameStatus(size);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        List<byte[]> jugades = new ArrayList<>();
+        int obertura = 0;
+        while (!joc.isGameOver() && obertura < openingPlies) {
+            List<MoveNode> moviments = joc.getMoves();
+            Point p = moviments.get(rnd.nextInt(moviments.size())).getPoint();
+            joc.placeStone(p);
+            jugades.add(jugada(p, 0, 0, false, 0));
+            obertura++;
+        }
+        while (!joc.isGameOver()) {
+            IPlayer jugador = jugadors[joc.getCurrentPlayer() == PlayerType.PLAYER1 ? 0 : 1];
+            ScheduledFuture<?> avis = rellotge.schedule(jugador::timeout, timeout, TimeUnit.SECONDS);
+            PlayerMove m = jugador.move(new HexGameStatus(joc));
+            avis.cancel(false);
+            if (m == null || m.getPoint() == null) {
+                joc.forceLoser();
+                break;
+            }
+            SearchStats stats = jugador instanceof HEXTEAM ? ((HEXTEAM) jugador).getLastSearchStats() : null;
+            boolean ambPuntuacio = stats != null && !stats.getIterations().isEmpty();
+            int puntuacio = ambPuntuacio ? stats.getIterations().get(stats.getIterations().size() - 1).getScore() : 0;
+            jugades.add(jugada(m.getPoint(), m.getMaxDepthReached(), m.getNumerOfNodesExplored(), ambPuntuacio, puntuacio));
+            joc.placeStone(m.getPoint());
+        }
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            PlayerType guanyador = joc.GetWinner();
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(size);
+            out.writeInt(partida);
+            out.writeByte(guanyador == null ? 0 : guanyador.ordinal() + 1);
+            out.writeByte(obertura);
+            out.writeShort(jugades.size());
+            for (byte[] j : jugades) {
+                out.write(j);
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex); // no passa mai en memòria
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] jugada(Point p, int profunditat, long nodes, boolean ambPuntuacio, int puntuacio) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(p.x);
+            out.writeByte(p.y);
+            out.writeByte(profunditat);
+            out.writeLong(nodes);
+            out.writeBoolean(ambPuntuacio);
+            out.writeInt(puntuacio);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Llegeix el fitxer de progrés: marca les partides dels fragments acabats.
+     * @return número del fragment següent
+     */
+    private int llegeixProgres(BitSet fetes) throws IOException {
+        Path fitxer = directori.resolve(PROGRES);
+        if (!Files.exists(fitxer)) {
+            return 0;
+        }
+        int seguent = 0;
+        try (BufferedReader in = Files.newBufferedReader(fitxer, StandardCharsets.UTF_8)) {
+            String linia;
+            while ((linia = in.readLine()) != null) {
+                String[] camps = linia.trim().split("\\s+");
+                if (camps.length < 2 || !camps[0].startsWith(PREFIX) || !camps[0].endsWith(EXTENSIO)) {
+                    continue;
+                }
+                String numero = camps[0].substring(PREFIX.length(), camps[0].length() - EXTENSIO.length());
+                seguent = Math.max(seguent, Integer.parseInt(numero) + 1);
+                // Si s'ha esborrat el fragment, les seves partides es tornen a jugar
+                if (Files.exists(directori.resolve(camps[0]))) {
+                    for (int i = 1; i < camps.length; i++) {
+                        fetes.set(Integer.parseInt(camps[i]));
+                    }
+                }
+            }
+        }
+        return seguent;
+    }
+
+    private void esborraTemporals() throws IOException {
+        try (DirectoryStream<Path> temporals = Files.newDirectoryStream(directori, PREFIX + "*.tmp")) {
+            for (Path p : temporals) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    /**
+     * Fil únic que escriu les partides de la cua als fragments.
+     */
+    private class Escriptor implements Runnable {
+
+        private final BlockingQueue<byte[]> cua;
+        private final int perFragment;
+        private int fragment;
+        private IOException error;
+
+        private OutputStream sortida;
+        private Path temporal;
+        private final List<Integer> partides = new ArrayList<>();
+
+        Escriptor(BlockingQueue<byte[]> cua, int fragment, int perFragment) {
+            this.cua = cua;
+            this.fragment = fragment;
+            this.perFragment = perFragment;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    byte[] partida = cua.take();
+                    if (partida == FINAL) {
+                        break;
+                    }
+                    if (error != null) {
+                        continue; // s'ha de continuar buidant la cua perquè els fils no s'encallin
+                    }
+                    try {
+                        escriu(partida);
+                    } catch (IOException ex) {
+                        error = ex;
+                    }
+                }
+                if (error == null) {
+                    tanca();
+                }
+            } catch (IOException ex) {
+                error = ex;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void escriu(byte[] partida) throws IOException {
+            if (sortida == null) {
+                temporal = directori.resolve(String.format("%s%05d.tmp", PREFIX, fragment));
+                sortida = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temporal)));
+            }
+            sortida.write(partida);
+            // El número de partida és just després de MAGIC, versió i mida
+            partides.add(((partida[6] & 0xFF) << 24) | ((partida[7] & 0xFF) << 16)
+                    | ((partida[8] & 0xFF) << 8) | (partida[9] & 0xFF));
+            if (partides.size() >= perFragment) {
+                tanca();
+            }
+        }
+
+        /**
+         * Acaba el fragment en curs, el renomena i l'apunta al progrés.
+         */
+        private void tanca() throws IOException {
+            if (sortida == null) {
+                return;
+            }
+            sortida.close();
+            sortida = null;
+            String nom = String.format("%s%05d%s", PREFIX, fragment, EXTENSIO);
+            Files.move(temporal, directori.resolve(nom), StandardCopyOption.ATOMIC_MOVE);
+            StringBuilder linia = new StringBuilder(nom);
+            for (int p : partides) {
+                linia.append(' ').append(p);
+            }
+            linia.append('\n');
+            try (Writer w = Files.newBufferedWriter(directori.resolve(PROGRES), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                w.write(linia.toString());
+            }
+            partides.clear();
+            fragment++;
+        }
+    }
+
+    /**
+     * Llegeix totes les partides d'un fragment.
+     * @param fragment fitxer {@code .hexs.gz}
+     * @return partides en ordre d'escriptura
+     * @throws IOException si falla la lectura o el fitxer és corrupte
+     */
+    public static List<Game> readShard(Path fragment) throws IOException {
+        List<Game> res = new ArrayList<>();
+        try (InputStream fitxer = Files.newInputStream(fragment);
+                DataInputStream in = new DataInputStream(new GZIPInputStream(fitxer))) {
+            while (true) {
+                int magic;
+                try {
+                    magic = in.readInt();
+                } catch (EOFException ex) {
+                    break;
+                }
+                if (magic != MAGIC) {
+                    throw new IOException("Partida d'autojoc corrupta");
+                }
+                byte versio = in.readByte();
+                if (versio != VERSION) {
+                    throw new IOException("Versió no suportada: " + versio);
+                }
+                Game g = new Game(in.readByte(), in.readInt());
+                int guanyador = in.readByte();
+                g.winner = guanyador == 0 ? null : PlayerType.values()[guanyador - 1];
+                g.openingPlies = in.readByte();
+                int n = in.readShort();
+                for (int i = 0; i < n; i++) {
+                    g.moves.add(new Point(in.readByte(), in.readByte()));
+                    g.depths.add((int) in.readByte());
+                    g.nodes.add(in.readLong());
+                    boolean ambPuntuacio = in.readBoolean();
+                    int puntuacio = in.readInt();
+                    g.scores.add(ambPuntuacio ? puntuacio : null);
+                }
+                res.add(g);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Partida d'autojoc llegida d'un fragment.
+     */
+    public static class Game {
+
+        private final int size;
+        private final int index;
+        private PlayerType winner;
+        private int openingPlies;
+        private final List<Point> moves = new ArrayList<>();
+        private final List<Integer> depths = new ArrayList<>();
+        private final List<Long> nodes = new ArrayList<>();
+        private final List<Integer> scores = new ArrayList<>();
+
+        Game(int size, int index) {
+            this.size = size;
+            this.index = index;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * @return número de partida dins el corpus
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public PlayerType getWinner() {
+            return winner;
+        }
+
+        /**
+         * @return nombre de jugades aleatòries inicials
+         */
+        public int getOpeningPlies() {
+            return openingPlies;
+        }
+
+        public List<Point> getMoves() {
+            return moves;
+        }
+
+        public int getDepth(int ply) {
+            return depths.get(ply);
+        }
+
+        public long getNodes(int ply) {
+            return nodes.get(ply);
+        }
+
+        /**
+         * @return puntuació de la cerca des del punt de vista de qui mou,
+         *         o null si el jugador no en dona (o és una jugada d'obertura)
+         */
+        public Integer getScore(int ply) {
+            return scores.get(ply);
+        }
+
+        /**
+         * Reconstrueix la posició abans de la jugada {@code ply}.
+         * @param ply nombre de jugades a aplicar des del tauler buit
+         * @return estat de joc resultant
+         */
+        public HexGameStatus positionAt(int ply) {
+            HexGameStatus s = new HexGameStatus(size);
+            for (int i = 0; i < ply; i++) {
+                s.placeStone(moves.get(i));
+            }
+            return s;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package edu.upc.epsevg.prop.hex;
+
+import edu.upc.epsevg.prop.hex.players.HEXTEAM;
+import edu.upc.epsevg.prop.hex.players.HeuristicWeights;
+import java.awt.Point;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Ajusta els pesos de l'heurística ({@link HeuristicWeights}) per SPSA (aproximació
+ * estocàstica per pertorbació simultània).
+ *
+ * A cada iteració k es pertorben tots els pesos alhora amb un vector aleatori
+ * de signes Δ: θ+ = θ + c_k Δ i θ- = θ - c_k Δ. Els dos jugadors es
+ * juguen parelles de partides curtes (la mateixa obertura aleatòria amb
+ * els colors canviats) repartides entre tots els nuclis, i el resultat net
+ * r (de -1 a 1, a favor de θ+) dona l'estimació del gradient
+ * g_i = r / (2 c_k Δ_i). Llavors θ = θ + a_k g, amb els guanys habituals
+ * a_k = a / (k + 1 + A)^0,602 i c_k = c / (k + 1)^0,101.
+ *
+ * Després de cada iteració es desa un punt de control; si el procés s'atura,
+ * en tornar-lo a llançar continua des de la darrera iteració acabada. Els
+ * pesos finals es desen en un fitxer que llegeix {@link HeuristicWeights#load}
+ * (p. ex. amb {@code hexteam:3:weights=fitxer} a {@link PlayerFactory}).
+ *
+ * Ús: SpsaTuner sortida.properties [iteracions] [parelles/iteració] [mida]
+ *     [profunditat] [fils] [llavor]
+ */
+public class SpsaTuner {
+
+    private static final double A_GUANY = 0.1;    // a
+    private static final double C_GUANY = 0.2;    // c
+    private static final double ALFA = 0.602;
+    private static final double GAMMA = 0.101;
+    private static final double PES_MINIM = 0;
+    private static final double PES_MAXIM = 5;
+    private static final int JUGADES_OBERTURA = 2;
+    private static final long TIMEOUT_MILLIS = 60_000; // només de seguretat: la cerca és de profunditat fixa
+
+    private final int iteracions;
+    private final int parelles;
+    private final int size;
+    private final int profunditat;
+    private final long seed;
+    // Una parella de jugadors per fil: entre partides només canvien els pesos
+    private final ThreadLocal<HEXTEAM[]> jugadorsFil = ThreadLocal.withInitial(this::creaJugadors);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Ús: SpsaTuner sortida.properties [iteracions] [parelles/iteració] [mida]"
+                    + " [profunditat] [fils] [llavor]");
+            return;
+        }
+        Path sortida = Paths.get(args[0]);
+        int iteracions = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int parelles = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        int mida = args.length > 3 ? Integer.parseInt(args[3]) : 7;
+        int profunditat = args.length > 4 ? Integer.parseInt(args[4]) : 2;
+        int fils = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+        long llavor = args.length > 6 ? Long.parseLong(args[6]) : 1;
+
+        SpsaTuner t = new SpsaTuner(iteracions, parelles, mida, profunditat, llavor);
+        HeuristicWeights pesos = t.tune(sortida, fils);
+        System.out.println("Pesos finals: " + pesos);
+    }
+
+    /**
+     * @param iteracions iteracions de SPSA
+     * @param parelles parelles de partides per iteració
+     * @param size mida del tauler
+     * @param profunditat profunditat de cerca de HEXTEAM a les partides
+     * @param seed llavor de les pertorbacions i les obertures
+     */
+    public SpsaTuner(int iteracions, int parelles, int size, int profunditat, long seed) {
+        this.iteracions = iteracions;
+        this.parelles = parelles;
+        this.size = size;
+        this.profunditat = profunditat;
+        this.seed = seed;
+    }
+
+    /**
+     * Executa (o continua) l'ajust i desa els pesos resultants.
+     * @param sortida fitxer de pesos; el punt de control és al costat, amb
+     *        l'extensió {@code .checkpoint}
+     * @param fils fils que juguen partides alhora
+     * @return pesos ajustats
+     * @throws IOException si falla la lectura o l'escriptura dels fitxers
+     * @throws Exception si falla alguna partida
+     */
+    public HeuristicWeights tune(Path sortida, int fils) throws Exception {
+        Path control = sortida.resolveSibling(sortida.getFileName() + ".checkpoint");
+        double[] theta = HeuristicWeights.DEFAULT.toArray();
+        int k = 0;
+        if (Files.exists(control)) {
+            k = llegeixControl(control, theta);
+            System.out.println("Continuant des de la iteració " + k + ": " + HeuristicWeights.of(theta));
+        }
+        double estabilitat = iteracions / 10.0; // A
+        ExecutorService pool = Executors.newFixedThreadPool(fils);
+        try {
+            for (; k < iteracions; k++) {
+                double ak = A_GUANY / Math.pow(k + 1 + estabilitat, ALFA);
+                double ck = C_GUANY / Math.pow(k + 1, GAMMA);
+                Random rnd = new Random(seed * 1_000_003L + k);
+                double[] delta = new double[theta.length];
+                double[] mes = new double[theta.length];
+                double[] menys = new double[theta.length];
+                for (int i = 0; i < theta.length; i++) {
+                    delta[i] = rnd.nextBoolean() ? 1 : -1;
+                    mes[i] = limita(theta[i] + ck * delta[i]);
+                    menys[i] = limita(theta[i] - ck * delta[i]);
+                }
+                double r = enfronta(pool, HeuristicWeights.of(mes), HeuristicWeights.of(menys), rnd.nextLong());
+                for (int i = 0; i < theta.length; i++) {
+                    theta[i] = limita(theta[i] + ak * r / (2 * ck * delta[i]));
+                }
+                desaControl(control, k + 1, theta);
+                System.out.printf("Iteració %d/%d: r=%+.3f  %s%n", k + 1, iteracions, r, HeuristicWeights.of(theta));
+            }
+        } finally {
+            pool.shutdown();
+        }
+        HeuristicWeights pesos = HeuristicWeights.of(theta);
+        pesos.save(sortida, "SpsaTuner: " + iteracions + " iteracions, " + parelles + " parelles, "
+                + size + "x" + size + ", profunditat " + profunditat);
+        return pesos;
+    }
+
+    /**
+     * Juga les parelles de partides d'una iteració.
+     * @return (victòries de θ+ - victòries de θ-) / partides
+     */
+    private double enfronta(ExecutorService pool, HeuristicWeights mes, HeuristicWeights menys, long llavor)
+            throws Exception {
+        List<Future<Integer>> resultats = new ArrayList<>();
+        for (int p = 0; p < parelles; p++) {
+            final long llavorObertura = llavor + p;
+            resultats.add(pool.submit(() -> juga(mes, menys, llavorObertura)));
+            resultats.add(pool.submit(() -> -juga(menys, mes, llavorObertura)));
+        }
+        int net = 0;
+        for (Future<Integer> f : resultats) {
+            net += f.get();
+        }
+        return (double) net / resultats.size();
+    }
+
+    /**
+     * Juga una partida a partir d'una obertura aleatòria.
+     * @return 1 si guanya el primer jugador, -1 si guanya el segon, 0 si no guanya ningú
+     */
+    private int juga(HeuristicWeights primer, HeuristicWeights segon, long llavorObertura) {
+        HEXTEAM[] jugadors = jugadorsFil.get();
+        jugadors[0].setWeights(primer);
+        jugadors[1].setWeights(segon);
+        Random rnd = new Random(llavorObertura);
+        HexGameStatus joc = new HexGameStatus(size);
+        for (int i = 0; i < JUGADES_OBERTURA && !joc.isGameOver(); i++) {
+            List<MoveNode> moviments = joc.getMoves();
+            joc.placeStone(moviments.get(rnd.nextInt(moviments.size())).getPoint());
+        }
+        while (!joc.isGameOver()) {
+            HEXTEAM j = jugadors[joc.getCurrentPlayer() == PlayerType.PLAYER1 ? 0 : 1];
+            Point p = j.move(new HexGameStatus(joc)).getPoint();
+            joc.placeStone(p);
+        }
+        PlayerType guanyador = joc.GetWinner();
+        return guanyador == null ? 0 : guanyador == PlayerType.PLAYER1 ? 1 : -1;
+    }
+
+    private HEXTEAM[] creaJugadors() {
+        HEXTEAM[] jugadors = {
+            new HEXTEAM(profunditat, PlayerType.PLAYER1, TIMEOUT_MILLIS),
+            new HEXTEAM(profunditat, PlayerType.PLAYER2, TIMEOUT_MILLIS)
+        };
+        for (HEXTEAM j : jugadors) {
+            // Els pesos canvien a cada partida: la memòria cau no s'aprofitaria
+            j.setEvaluationCache(null);
+        }
+        return jugadors;
+    }
+
+    private static double limita(double pes) {
+        return Math.max(PES_MINIM, Math.min(PES_MAXIM, pes));
+    }
+
+    private static int llegeixControl(Path control, double[] theta) throws IOException {
+        Properties p = new Properties();
+        try (Reader in = Files.newBufferedReader(control, StandardCharsets.UTF_8)) {
+            p.load(in);
+        }
+        for (int i = 0; i < theta.length; i++) {
+            theta[i] = Double.parseDouble(p.getProperty(HeuristicWeights.NAMES[i], "1"));
+        }
+        return Integer.parseInt(p.getProperty("iteration", "0"));
+    }
+
+    /**
+     * Desa el punt de control en un fitxer temporal i el renomena, perquè una
+     * aturada a mig escriure no el deixi malmès.
+     */
+    private static void desaControl(Path control, int k, double[] theta) throws IOException {
+        Properties p = new Properties();
+        p.setProperty("iteration", Integer.toString(k));
+        for (int i = 0; i < theta.length; i++) {
+            p.setProperty(HeuristicWeights.NAMES[i], Double.toString(theta[i]));
+        }
+        Path temporal = control.resolveSibling(control.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temporal, StandardCharsets.UTF_8)) {
+            p.store(out, "SpsaTuner");
+        }
+        Files.move(temporal, control, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,137 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import edu.upc.epsevg.prop.hex.MoveNode;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generador de jugades candidates per als nodes interiors en taulers grans.
+ *
+ * Restringeix les jugades a les caselles properes a pedres ja jugades (dins
+ * d'un radi hexagonal), als punts de pont de cada pedra i a les caselles de
+ * plantilla de vora (les que separen una pedra de les dues primeres files del
+ * seu costat). Si el conjunt restringit és buit o el tauler és petit, es
+ * tornen totes les jugades. Les posicions tàctiques no hi arriben: HEXTEAM
+ * resol abans les victòries immediates i els blocatges obligats amb el
+ * {@link ThreatDetector}.
+ */
+public class CandidateGenerator {
+
+    private static final int[] DX = {-1, 1, 0, 1, 0, -1};
+    private static final int[] DY = {0, 0, -1, -1, 1, 1};
+    private static final int[] PONT_DX = {1, -1, 2, -2, 1, -1};
+    private static final int[] PONT_DY = {1, -1, -1, 1, -2, 2};
+
+    private final int radius;
+    private final boolean bridges;
+    private final boolean edgeTemplates;
+    private final int minBoardSize;
+
+    /**
+     * Configuració per defecte: radi 1, ponts i plantilles de vora, a partir
+     * de taulers 11x11.
+     */
+    public CandidateGenerator() {
+        this(1, true, true, 11);
+    }
+
+    /**
+     * @param radius distància hexagonal màxima a una pedra existent
+     * @param bridges si s'hi afegeixen els punts de pont de cada pedra
+     * @param edgeTemplates si s'hi afegeixen les caselles de plantilla de vora
+     * @param minBoardSize mida mínima del tauler per restringir les jugades
+     */
+    public CandidateGenerator(int radius, boolean bridges, boolean edgeTemplates, int minBoardSize) {
+        this.radius = radius;
+        this.bridges = bridges;
+        this.edgeTemplates = edgeTemplates;
+        this.minBoardSize = minBoardSize;
+    }
+
+    /**
+     * @param joc posició actual
+     * @return jugades candidates, en el mateix ordre que {@link HexGameStatus#getMoves()}
+     */
+    public List<MoveNode> generate(HexGameStatus joc) {
+        List<MoveNode> totes = joc.getMoves();
+        int n = joc.getSize();
+        if (n < minBoardSize) {
+            return totes;
+        }
+
+        boolean[] candidat = new boolean[n * n];
+        boolean alguna = false;
+        for (int x = 0; x < n; x++) {
+            for (int y = 0; y < n; y++) {
+                int color = joc.getPos(x, y);
+                if (color == 0) {
+                    continue;
+                }
+                alguna = true;
+                marcaRadi(candidat, n, x, y);
+                if (bridges) {
+                    for (int d = 0; d < 6; d++) {
+                        marca(candidat, n, x + PONT_DX[d], y + PONT_DY[d]);
+                    }
+                }
+                if (edgeTemplates) {
+                    marcaVora(candidat, n, x, y, color);
+                }
+            }
+        }
+        if (!alguna) {
+            return totes;
+        }
+
+        List<MoveNode> res = new ArrayList<>();
+        for (MoveNode m : totes) {
+            Point p = m.getPoint();
+            if (candidat[p.x * n + p.y]) {
+                res.add(m);
+            }
+        }
+        return res.isEmpty() ? totes : res;
+    }
+
+    private void marcaRadi(boolean[] candidat, int n, int x, int y) {
+        for (int dx = -radius; dx <= radius; dx++) {
+            for (int dy = -radius; dy <= radius; dy++) {
+                // Distància hexagonal en coordenades axials
+                if (Math.abs(dx) + Math.abs(dy) + Math.abs(dx + dy) <= 2 * radius) {
+                    marca(candidat, n, x + dx, y + dy);
+                }
+            }
+        }
+    }
+
+    /**
+     * Plantilles de vora: una pedra a la segona fila del seu costat es
+     * connecta amb les dues caselles de la primera fila que toca; una a la
+     * tercera fila, amb els veïns que l'apropen al costat.
+     */
+    private void marcaVora(boolean[] candidat, int n, int x, int y, int color) {
+        int coord = color == 1 ? x : y;
+        int distanciaVora = Math.min(coord, n - 1 - coord);
+        if (distanciaVora == 0 || distanciaVora > 2) {
+            return;
+        }
+        int sentit = coord < n - 1 - coord ? -1 : 1;
+        for (int d = 0; d < 6; d++) {
+            int pas = color == 1 ? DX[d] : DY[d];
+            if (pas == sentit) {
+                marca(candidat, n, x + DX[d], y + DY[d]);
+                if (distanciaVora == 2) {
+                    marca(candidat, n, x + 2 * DX[d], y + 2 * DY[d]);
+                }
+            }
+        }
+    }
+
+    private static void marca(boolean[] candidat, int n, int x, int y) {
+        if (x >= 0 && y >= 0 && x < n && y < n) {
+            candidat[x * n + y] = true;
+        }
+    }
+}
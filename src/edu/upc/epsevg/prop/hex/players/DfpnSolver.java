@@ -0,0 +1,272 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import java.awt.Point;
+import java.util.Arrays;
+
+/**
+ * Resolutor exacte de finals per nombres de prova en profunditat (DFPN).
+ *
+ * Treballa sobre una còpia pròpia del tauler (un {@code byte[]} indexat per
+ * {@code x * n + y}) i una taula de transposició de mida fixa, de manera que
+ * no crea cap {@link HexGameStatus} durant la cerca. Els nombres de prova es
+ * guarden en forma negamax: {@code phi} és la dificultat de demostrar que
+ * guanya qui mou i {@code delta} la de demostrar que perd.
+ *
+ * La taula es conserva entre crides: les entrades van indexades per la clau
+ * Zobrist de la posició, de manera que les demostracions i les estimacions
+ * d'una jugada continuen sent vàlides a les següents de la mateixa partida.
+ */
+public class DfpnSolver {
+
+    /**
+     * Resultat de la resolució d'una posició.
+     */
+    public enum Status {
+        WIN, LOSS, UNKNOWN
+    }
+
+    static final int INF = 100_000_000;
+
+    private final long[] ttClaus;
+    private final int[] ttPhi;
+    private final int[] ttDelta;
+    private final int ttMascara;
+
+    private int n;
+    private NeighbourTable veins;
+    private byte[] tauler;
+    private int[] pila;           // pila per a la comprovació de victòria
+    private boolean[] visitats;
+    private long nodes;
+    private long maxNodes;
+    private long deadline;
+    private Point bestMove;
+
+    /**
+     * @param log2Entrades logaritme en base 2 del nombre d'entrades de la taula
+     */
+    public DfpnSolver(int log2Entrades) {
+        int mida = 1 << log2Entrades;
+        ttClaus = new long[mida];
+        ttPhi = new int[mida];
+        ttDelta = new int[mida];
+        ttMascara = mida - 1;
+    }
+
+    /**
+     * Intenta resoldre la posició per al jugador que mou, aprofitant el que
+     * ja hi hagi a la taula de resolucions anteriors.
+     * @param joc posició
+     * @param maxNodes nombre màxim de nodes a explorar
+     * @param deadline instant límit ({@link System#currentTimeMillis()})
+     * @return WIN o LOSS si s'ha demostrat, UNKNOWN si s'ha exhaurit el pressupost
+     */
+    public Status solve(HexGameStatus joc, long maxNodes, long deadline) {
+        if (tauler == null || n != joc.getSize()) {
+            n = joc.getSize();
+            veins = NeighbourTable.of(n);
+            tauler = new byte[n * n];
+            pila = new int[n * n];
+            visitats = new boolean[n * n];
+        }
+        this.nodes = 0;
+        this.maxNodes = maxNodes;
+        this.deadline = deadline;
+        this.bestMove = null;
+
+        for (int x = 0; x < n; x++) {
+            for (int y = 0; y < n; y++) {
+                tauler[x * n + y] = (byte) joc.getPos(x, y);
+            }
+        }
+        long clau = Zobrist.clau(joc);
+        byte color = (byte) joc.getCurrentPlayerColor();
+
+        try {
+            mid(clau, color, INF, INF);
+        } catch (PressupostEsgotat e) {
+            return Status.UNKNOWN;
+        }
+
+        int phi = llegeixPhi(clau);
+        if (phi == 0) {
+            bestMove = jugadaGuanyadora(clau, color);
+            return Status.WIN;
+        }
+        return llegeixDelta(clau) == 0 ? Status.LOSS : Status.UNKNOWN;
+    }
+
+    /**
+     * Buida la taula de transposició.
+     */
+    public void clear() {
+        Arrays.fill(ttPhi, 0);
+        Arrays.fill(ttDelta, 0);
+    }
+
+    /**
+     * @return jugada guanyadora de l'última posició resolta com a WIN, o
+     *         null si la taula (amb pèrdues) ja no té el fill que la demostra
+     */
+    public Point getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * @return nodes explorats per l'última resolució
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Expansió de MID: cerca el node fins que els seus nombres superin els llindars.
+     */
+    private void mid(long clau, byte color, int llindarPhi, int llindarDelta) throws PressupostEsgotat {
+        if (++nodes > maxNodes || ((nodes & 1023) == 0 && System.currentTimeMillis() > deadline)) {
+            throw new PressupostEsgotat();
+        }
+
+        while (true) {
+            // Recalcula phi i delta del node a partir dels fills
+            int phi = INF;
+            int delta = 0;
+            int millor = -1;
+            int deltaMillor = INF;
+            int segonDelta = INF;
+            int phiMillor = 0;
+            for (int c = 0; c < tauler.length; c++) {
+                if (tauler[c] != 0) {
+                    continue;
+                }
+                long clauFill = clau ^ clauPedra(c, color);
+                int phiFill;
+                int deltaFill;
+                int i = index(clauFill);
+                if (trobada(i, clauFill)) {
+                    phiFill = ttPhi[i];
+                    deltaFill = ttDelta[i];
+                } else if (guanya(c, color)) {
+                    // L'oponent ja ha perdut al node fill
+                    phiFill = INF;
+                    deltaFill = 0;
+                    desa(clauFill, phiFill, deltaFill);
+                } else {
+                    phiFill = 1;
+                    deltaFill = 1;
+                }
+                phi = Math.min(phi, deltaFill);
+                delta = Math.min(INF, delta + phiFill);
+                if (deltaFill < deltaMillor) {
+                    segonDelta = deltaMillor;
+                    deltaMillor = deltaFill;
+                    phiMillor = phiFill;
+                    millor = c;
+                } else if (deltaFill < segonDelta) {
+                    segonDelta = deltaFill;
+                }
+            }
+
+            if (phi >= llindarPhi || delta >= llindarDelta || millor < 0) {
+                desa(clau, millor < 0 ? INF : phi, millor < 0 ? 0 : delta);
+                return;
+            }
+
+            int llindarPhiFill = (int) Math.min(INF, (long) llindarDelta - delta + phiMillor);
+            int llindarDeltaFill = Math.min(llindarPhi, segonDelta + 1);
+
+            tauler[millor] = color;
+            try {
+                mid(clau ^ clauPedra(millor, color), (byte) -color, llindarPhiFill, llindarDeltaFill);
+            } finally {
+                tauler[millor] = 0;
+            }
+        }
+    }
+
+    /**
+     * @return un fill demostrat com a perdedor per a l'oponent
+     */
+    private Point jugadaGuanyadora(long clau, byte color) {
+        for (int c = 0; c < tauler.length; c++) {
+            if (tauler[c] == 0 && llegeixDelta(clau ^ clauPedra(c, color)) == 0) {
+                return new Point(c / n, c % n);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Comprova si posar una pedra del color a la casella connecta els dos
+     * costats del jugador (PLAYER1 uneix x = 0 amb x = n-1, PLAYER2 y = 0 amb y = n-1).
+     */
+    private boolean guanya(int casella, byte color) {
+        Arrays.fill(visitats, false);
+        int[] v = veins.neighbours();
+        int caselles = n * n;
+        int nodeInici = veins.start(color);
+        int nodeFi = veins.end(color);
+        boolean inici = false;
+        boolean fi = false;
+        int cim = 0;
+        pila[cim++] = casella;
+        visitats[casella] = true;
+        while (cim > 0) {
+            int c = pila[--cim];
+            for (int i = veins.offset(c), ultim = veins.neighboursEnd(c); i < ultim; i++) {
+                int w = v[i];
+                if (w >= caselles) {
+                    inici |= w == nodeInici;
+                    fi |= w == nodeFi;
+                } else if (!visitats[w] && tauler[w] == color) {
+                    visitats[w] = true;
+                    pila[cim++] = w;
+                }
+            }
+            if (inici && fi) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long clauPedra(int casella, byte color) {
+        return Zobrist.clau(n, casella, color);
+    }
+
+    private int index(long clau) {
+        return (int) (clau ^ (clau >>> 32)) & ttMascara;
+    }
+
+    /**
+     * Una entrada buida té phi = delta = 0, combinació impossible en una entrada real.
+     */
+    private boolean trobada(int i, long clau) {
+        return ttClaus[i] == clau && (ttPhi[i] | ttDelta[i]) != 0;
+    }
+
+    private void desa(long clau, int phi, int delta) {
+        int i = index(clau);
+        ttClaus[i] = clau;
+        ttPhi[i] = phi;
+        ttDelta[i] = delta;
+    }
+
+    private int llegeixPhi(long clau) {
+        int i = index(clau);
+        return trobada(i, clau) ? ttPhi[i] : 1;
+    }
+
+    private int llegeixDelta(long clau) {
+        int i = index(clau);
+        return trobada(i, clau) ? ttDelta[i] : 1;
+    }
+
+    /**
+     * S'ha superat el límit de nodes o de temps.
+     */
+    private static class PressupostEsgotat extends Exception {
+        private static final long serialVersionUID = 1L;
+    }
+}
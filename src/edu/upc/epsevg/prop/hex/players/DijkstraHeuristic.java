@@ -2,8 +2,7 @@ package edu.upc.epsevg.prop.hex.players;
 
 import edu.upc.epsevg.prop.hex.HexGameStatus;
 import edu.upc.epsevg.prop.hex.PlayerType;
-import java.awt.Point;
-import java.util.*;
+import java.util.Arrays;
 
 /**
  *
@@ -11,6 +10,44 @@ import java.util.*;
  */
 public class DijkstraHeuristic {
 
+    /**
+     * Cada quantes avaluacions s'emet un {@link EvaluationEvent} de JFR
+     * (potència de 2).
+     */
+    public static final int JFR_SAMPLE_PERIOD = 1024;
+
+    private int comptadorMostreig; // avaluacions des de l'última mostra
+    private final HeuristicWeights pesos; // pesos dels termes de l'avaluació
+
+    // Vectors de treball de les distàncies, reutilitzats entre avaluacions
+    private int n;
+    private NeighbourTable veins;
+    private final int[] parelles = new int[2];
+    private byte[] tauler;
+    private int[] distInici;
+    private int[] distFi;
+    private int[] distIniciOponent;
+    private int[] distFiOponent;
+    private int[] cua;
+
+    /**
+     * Heurística amb els pesos originals ({@link HeuristicWeights#DEFAULT}).
+     */
+    public DijkstraHeuristic() {
+        this(HeuristicWeights.DEFAULT);
+    }
+
+    /**
+     * @param pesos pesos dels termes de {@link #avalua}
+     */
+    public DijkstraHeuristic(HeuristicWeights pesos) {
+        this.pesos = pesos;
+    }
+
+    public HeuristicWeights getWeights() {
+        return pesos;
+    }
+
     /**
      * Avalua l'estat del tauler fent servir múltiples heurístiques combinades. 
      * @param estatPartida estat actual del joc Hex.
@@ -18,70 +55,188 @@ public class DijkstraHeuristic {
      * @return valor heurístic resultant, 
      */
     public int avalua(HexGameStatus estatPartida, PlayerType jugador) {
-        int puntuacioJugador = dijkstra(estatPartida, jugador);
-        int puntuacioOponent = dijkstra(estatPartida, PlayerType.opposite(jugador));
-        int puntuacioConnectivitat = avaluaConnectivitat(estatPartida, jugador);
-        int puntuacioBloc = heuristicaBlocOponent(estatPartida, jugador);
+        // Només una de cada JFR_SAMPLE_PERIOD avaluacions crea l'esdeveniment
+        EvaluationEvent event = null;
+        if ((++comptadorMostreig & (JFR_SAMPLE_PERIOD - 1)) == 0) {
+            event = new EvaluationEvent();
+            event.begin();
+        }
+
+        carrega(estatPartida);
+        int puntuacioJugador = distancia(jugador, true, distInici);
+        int puntuacioOponent = distancia(PlayerType.opposite(jugador), true, distIniciOponent);
+        // Connectivitat i blocatge en una sola passada per les pedres del jugador
+        veins.countPairs(tauler, color(jugador), -color(jugador), parelles);
+        int puntuacioConnectivitat = parelles[0] / 2;
+        int puntuacioBloc = parelles[1] / 2;
 
         // Combina les diferents heurístiques per obtenir una puntuació final
-        return (puntuacioOponent - puntuacioJugador) + puntuacioConnectivitat + puntuacioBloc;
+        int valor = pesos.combine(puntuacioJugador, puntuacioOponent, puntuacioConnectivitat, puntuacioBloc);
+
+        if (event != null && event.shouldCommit()) {
+            event.size = estatPartida.getSize();
+            event.playerDistance = puntuacioJugador;
+            event.opponentDistance = puntuacioOponent;
+            event.score = valor;
+            event.commit();
+        }
+        return valor;
+    }
+
+    /**
+     * Avalua de cop tots els fills d'una posició: el valor que donaria
+     * {@link #avalua} després que el jugador que mou posi una pedra a cada
+     * casella buida.
+     *
+     * Només calcula els mapes de distàncies de la posició pare des de cada
+     * costat. Una casella buida c que passa a ser pedra (cost 0) deixa la
+     * distància d'un jugador en {@code min(d, inici[c] + fi[c] - 2)}, perquè
+     * els dos mapes inclouen el cost de c; la connectivitat i el blocatge
+     * només canvien pels veïns de c. Així el cost és el de quatre recorreguts
+     * en lloc d'una avaluació completa per fill.
+     *
+     * @param joc posició pare
+     * @param jugador jugador per al qual es calcula l'heurística
+     * @param sortida valor de cada fill, indexat per {@code x * n + y}; les
+     *        caselles ocupades no es modifiquen
+     */
+    public void avaluaFills(HexGameStatus joc, PlayerType jugador, int[] sortida) {
+        carrega(joc);
+        PlayerType oponent = PlayerType.opposite(jugador);
+        int dJugador = distancies(jugador, distInici, distFi);
+        int dOponent = distancies(oponent, distIniciOponent, distFiOponent);
+
+        int colorJugador = color(jugador);
+        int colorOponent = color(oponent);
+        veins.countPairs(tauler, colorJugador, colorOponent, parelles);
+        int connectivitat = parelles[0];
+        int bloc = parelles[1];
+        int colorQueMou = joc.getCurrentPlayerColor();
+
+        for (int c = 0; c < tauler.length; c++) {
+            if (tauler[c] != 0) {
+                continue;
+            }
+            int nouJugador = Math.min(dJugador, distInici[c] + distFi[c] - 2);
+            int nouOponent = Math.min(dOponent, distIniciOponent[c] + distFiOponent[c] - 2);
+            // Parelles ordenades noves que forma la pedra (en els dos sentits)
+            int veinsJugador = veinsDeColor(c, colorJugador);
+            int novaConnectivitat = connectivitat + (colorQueMou == colorJugador ? 2 * veinsJugador : 0);
+            int nouBloc = bloc
+                    + (colorQueMou == colorOponent ? veinsJugador : 0)
+                    + (colorQueMou == colorJugador ? veinsDeColor(c, colorOponent) : 0);
+            sortida[c] = pesos.combine(nouJugador, nouOponent, novaConnectivitat / 2, nouBloc / 2);
+        }
     }
 
     /**
-     * Implementació de l'algorisme de Dijkstra adaptat per avaluar distàncies en Hex.
+     * Distància mínima en Hex: nombre de caselles buides que falten per
+     * unir els dos costats del jugador. Les pedres no costen res.
      * @param joc estat actual del joc Hex.
      * @param jugador jugador per al qual es calcula la distància 
      * @return  distància mínima als vorals d'objectiu.
      */
     public int dijkstra(HexGameStatus joc, PlayerType jugador) {
-        int midaTauler = joc.getSize();
-        int[][] distancia = new int[midaTauler][midaTauler];
-        boolean[][] visitats = new boolean[midaTauler][midaTauler];
-        PriorityQueue<Point> cuaDePrioritat = new PriorityQueue<>(Comparator.comparingInt(p -> distancia[p.x][p.y]));
-
-        // Inicialitza la cua de prioritat i la matriu de distàncies 
-        for (int i = 0; i < midaTauler; i++) {
-            Arrays.fill(distancia[i], Integer.MAX_VALUE);
-            for (int j = 0; j < midaTauler; j++) {
-                // Si és el voral inicial per a aquest jugador, el posem a la cua. 
-                if ((jugador == PlayerType.PLAYER1 && i == 0) || (jugador == PlayerType.PLAYER2 && j == 0)) {
-                    distancia[i][j] = (joc.getPos(i, j) == 0) ? 1 : 0;
-                    cuaDePrioritat.add(new Point(i, j));
-                }
+        carrega(joc);
+        return distancia(jugador, true, distInici);
+    }
+
+    /**
+     * Copia el tauler als vectors de treball.
+     */
+    private void carrega(HexGameStatus joc) {
+        int mida = joc.getSize();
+        if (mida != n) {
+            n = mida;
+            veins = NeighbourTable.of(n);
+            tauler = new byte[n * n];
+            distInici = new int[n * n];
+            distFi = new int[n * n];
+            distIniciOponent = new int[n * n];
+            distFiOponent = new int[n * n];
+            cua = new int[2 * n * n + 2];
+        }
+        for (int x = 0; x < n; x++) {
+            for (int y = 0; y < n; y++) {
+                tauler[x * n + y] = (byte) joc.getPos(x, y);
             }
         }
+    }
+
+    /**
+     * Mapes de distàncies des dels dos costats del jugador.
+     * @return distància mínima entre els dos costats
+     */
+    private int distancies(PlayerType jugador, int[] inici, int[] fi) {
+        distancia(jugador, false, fi);
+        return distancia(jugador, true, inici);
+    }
 
-        // S'executa l'algorisme de Dijkstra
-        while (!cuaDePrioritat.isEmpty()) {
-            Point actual = cuaDePrioritat.poll();
-            if (visitats[actual.x][actual.y]) continue;
-            visitats[actual.x][actual.y] = true;
-
-            for (Point vei : joc.getNeigh(actual)) {
-                if (!visitats[vei.x][vei.y]) {
-                    int distanciaCalculada = distancia[actual.x][actual.y] + ((joc.getPos(vei) == 0) ? 1 : 0);
-                    if (distanciaCalculada < distancia[vei.x][vei.y]) {
-                        distancia[vei.x][vei.y] = distanciaCalculada;
-                        cuaDePrioritat.add(vei);
+    /**
+     * Recorregut 0-1 (casella buida 1, pedra 0) des d'un costat del jugador.
+     * La distància de cada casella inclou el seu propi cost.
+     * @param desDeInici cert per sortir del costat 0, fals per sortir del n-1
+     * @return distància mínima fins al costat contrari
+     */
+    private int distancia(PlayerType jugador, boolean desDeInici, int[] dist) {
+        int color = color(jugador);
+        int[] v = veins.neighbours();
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        int cua0 = n * n + 1;
+        int cua1 = cua0;
+        // Les caselles del costat de sortida són els veïns del seu node virtual
+        int origen = desDeInici ? veins.start(color) : veins.end(color);
+        for (int i = veins.offset(origen), fi = veins.cellsEnd(origen); i < fi; i++) {
+            int c = v[i];
+            dist[c] = tauler[c] == 0 ? 1 : 0;
+            if (dist[c] == 0) {
+                cua[--cua0] = c;
+            } else {
+                cua[cua1++] = c;
+            }
+        }
+        while (cua0 < cua1) {
+            int c = cua[cua0++];
+            for (int i = veins.offset(c), fi = veins.cellsEnd(c); i < fi; i++) {
+                int w = v[i];
+                int cost = tauler[w] == 0 ? 1 : 0;
+                if (dist[c] + cost < dist[w]) {
+                    dist[w] = dist[c] + cost;
+                    if (cost == 0) {
+                        cua[--cua0] = w;
+                    } else {
+                        cua[cua1++] = w;
                     }
                 }
             }
         }
-        
-        
-        // Calcula la distància mínima als vorals d'objectiu. 
-        int distanciaMinima = Integer.MAX_VALUE; 
-        for (int i = 0; i < midaTauler; i++) { 
-            int indexVora = (jugador == PlayerType.PLAYER1) ? (midaTauler - 1) : i;
-            int indexDist = (jugador == PlayerType.PLAYER1)
-                    ? distancia[indexVora][i]
-                    : distancia[i][indexVora];
-            distanciaMinima = Math.min(distanciaMinima, indexDist);
-        }
 
+        int distanciaMinima = Integer.MAX_VALUE;
+        int desti = desDeInici ? veins.end(color) : veins.start(color);
+        for (int i = veins.offset(desti), fi = veins.cellsEnd(desti); i < fi; i++) {
+            distanciaMinima = Math.min(distanciaMinima, dist[v[i]]);
+        }
         return distanciaMinima;
     }
 
+    /**
+     * @return color de les pedres del jugador al tauler ({@code getPos}): 1 o -1
+     */
+    private static int color(PlayerType jugador) {
+        return jugador == PlayerType.PLAYER1 ? 1 : -1;
+    }
+
+    private int veinsDeColor(int c, int color) {
+        int[] v = veins.neighbours();
+        int total = 0;
+        for (int i = veins.offset(c), fi = veins.cellsEnd(c); i < fi; i++) {
+            if (tauler[v[i]] == color) {
+                total++;
+            }
+        }
+        return total;
+    }
+
     /** 
      * Avalua la connectivitat de les peces del jugador al tauler. 
      * @param joc estat actual del joc Hex  
@@ -111,23 +266,10 @@ public class DijkstraHeuristic {
      * @return puntuació calculada. 
      */
     private int calculaConnectivitat(HexGameStatus joc, PlayerType jugador, boolean comptaPropi) {
-        int midaTauler = joc.getSize();
-        int puntuacio = 0;
-
-        for (int i = 0; i < midaTauler; i++) {
-            for (int j = 0; j < midaTauler; j++) {
-                if (joc.getPos(i, j) == jugador.ordinal() + 1) {
-                    for (Point vei : joc.getNeigh(new Point(i, j))) {
-                        if (comptaPropi && joc.getPos(vei) == jugador.ordinal() + 1) {
-                            puntuacio++; // Connectivitat pròpia
-                        } else if (!comptaPropi
-                                && joc.getPos(vei) == PlayerType.opposite(jugador).ordinal() + 1) {
-                            puntuacio++; // bloqueja l'oponent
-                        }
-                    }
-                }
-            }
-        }
+        carrega(joc);
+        // [0]: connectivitat pròpia, [1]: veïns de l'oponent que bloqueja
+        veins.countPairs(tauler, color(jugador), -color(jugador), parelles);
+        int puntuacio = comptaPropi ? parelles[0] : parelles[1];
         // Evitem comptar dues vegades les connexions. 
         return puntuacio / 2;
     }
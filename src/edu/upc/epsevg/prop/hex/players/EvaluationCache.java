@@ -0,0 +1,130 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Memòria cau de l'avaluació heurística, indexada per la clau de Zobrist de
+ * la posició.
+ *
+ * És de mida fixa i amb pèrdues: cada posició té una sola casella i una
+ * posició nova sobreescriu l'anterior. Cada casella és un {@code long} que
+ * conté els 32 bits alts de la clau i la puntuació, de manera que una
+ * lectura o escriptura atòmica de la casella és suficient i diversos fils la
+ * poden compartir sense bloquejos. Si dues posicions coincideixen en l'índex
+ * i en els 32 bits alts, es retorna la puntuació equivocada; amb claus de 64
+ * bits és prou improbable per a una heurística.
+ */
+public class EvaluationCache {
+
+    private static final VarHandle CASELLA = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static EvaluationCache compartida; // dels jugadors amb els pesos originals
+
+    private final long[] caselles;
+    private final int mascara;
+    private final LongAdder consultes = new LongAdder();
+    private final LongAdder encerts = new LongAdder();
+
+    /**
+     * Memòria cau única per a tots els jugadors del procés que avaluen amb
+     * {@link HeuristicWeights#DEFAULT}, de manera que les instàncies
+     * d'escalfament, d'eines o de cada partida no en creen cap de nova. Es
+     * crea la primera vegada que es demana.
+     * @return la memòria cau compartida (2^20 caselles)
+     */
+    public static EvaluationCache shared() {
+        synchronized (EvaluationCache.class) {
+            if (compartida == null) {
+                compartida = new EvaluationCache();
+            }
+            return compartida;
+        }
+    }
+
+    /**
+     * Memòria cau de 2^20 caselles (8 MB).
+     */
+    public EvaluationCache() {
+        this(20);
+    }
+
+    /**
+     * @param log2 logaritme en base 2 del nombre de caselles
+     */
+    public EvaluationCache(int log2) {
+        this.caselles = new long[1 << log2];
+        this.mascara = caselles.length - 1;
+    }
+
+    /**
+     * Clau de la memòria cau per a una posició i un punt de vista: la mateixa
+     * posició avaluada per als dos jugadors no ha de compartir casella.
+     * @param clau clau de Zobrist de la posició
+     * @param color color del jugador des del qual s'avalua (1 o -1)
+     */
+    public static long key(long clau, int color) {
+        return color == 1 ? clau : clau ^ 0x9E37_79B9_7F4A_7C15L;
+    }
+
+    /**
+     * Busca una puntuació.
+     * @param key clau ({@link #key(long, int)})
+     * @param sortida on es deixa la puntuació si es troba ({@code sortida[0]})
+     * @return cert si s'ha trobat
+     */
+    public boolean probe(long key, int[] sortida) {
+        consultes.increment();
+        long casella = (long) CASELLA.getOpaque(caselles, (int) key & mascara);
+        if (casella != 0 && (int) (casella >>> 32) == (int) (key >>> 32)) {
+            encerts.increment();
+            sortida[0] = (int) casella;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Desa una puntuació, substituint el que hi hagués a la casella.
+     * @param key clau ({@link #key(long, int)})
+     * @param puntuacio valor de l'heurística
+     */
+    public void store(long key, int puntuacio) {
+        long casella = (key & 0xFFFF_FFFF_0000_0000L) | (puntuacio & 0xFFFF_FFFFL);
+        CASELLA.setOpaque(caselles, (int) key & mascara, casella);
+    }
+
+    /**
+     * Buida totes les caselles i les estadístiques.
+     */
+    public void clear() {
+        for (int i = 0; i < caselles.length; i++) {
+            CASELLA.setOpaque(caselles, i, 0L);
+        }
+        consultes.reset();
+        encerts.reset();
+    }
+
+    public long getProbes() {
+        return consultes.sum();
+    }
+
+    public long getHits() {
+        return encerts.sum();
+    }
+
+    /**
+     * @return fracció de consultes que han trobat la puntuació
+     */
+    public double getHitRate() {
+        long c = consultes.sum();
+        return c == 0 ? 0 : (double) encerts.sum() / c;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EvaluationCache: %d slots, %d probes, hit %.1f%%",
+                caselles.length, getProbes(), 100 * getHitRate());
+    }
+}
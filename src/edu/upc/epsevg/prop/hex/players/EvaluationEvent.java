@@ -0,0 +1,30 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Esdeveniment JFR mostrejat de {@link DijkstraHeuristic#avalua}. Només se'n
+ * crea un cada {@link DijkstraHeuristic#JFR_SAMPLE_PERIOD} avaluacions.
+ */
+@Name("edu.upc.epsevg.prop.hex.Evaluation")
+@Label("Evaluation")
+@Category({"Hex", "Heuristic"})
+@Description("Avaluació heurística mostrejada")
+public class EvaluationEvent extends Event {
+
+    @Label("Board Size")
+    int size;
+
+    @Label("Player Distance")
+    int playerDistance;
+
+    @Label("Opponent Distance")
+    int opponentDistance;
+
+    @Label("Score")
+    int score;
+}
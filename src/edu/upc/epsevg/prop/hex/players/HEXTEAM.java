@@ -9,12 +9,15 @@ import edu.upc.epsevg.prop.hex.PlayerType;
 import edu.upc.epsevg.prop.hex.SearchType;
 
 import java.awt.Point;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 /**
  * HEXTEAM: Implementació amb IDS, taules de transposició i poda alfa-beta millorada.
  */
-public class HEXTEAM implements IPlayer, IAuto {
+public class HEXTEAM implements IPlayer, IAuto, ProgressSource, WarmUp {
 
     // Paràmetres de configuració
     private int maxDepth;               // profunditat màxima 
@@ -22,10 +25,50 @@ public class HEXTEAM implements IPlayer, IAuto {
     private long nodesExplored;         // nodes explorats
     private boolean timeout;            // control del temps (ha expirat)
     private DijkstraHeuristic heuristic; // heurística 
-    private final Map<Long, TranspositionEntry> transpositionTable; // taula de transposició
+    private TranspositionTable transpositionTable; // taula de transposició
     private long startTime;             // temps d'inici
     private long timeoutMillis;         // temps límit en milisegons 
-    private List<Integer> depthsExplored; 
+    private List<Integer> depthsExplored; // profunditats completades a l'últim moviment
+
+    private static final int WARMUP_MILLIS = 150;    // temps de cada cerca d'escalfament
+    private static final int LMR_JUGADES = 3;        // fills explorats sempre a profunditat completa
+    private static final int LMR_PROFUNDITAT = 3;    // profunditat mínima per reduir
+    private static final int LMR_TARDANA = 12;       // a partir d'aquest fill es redueix un nivell més
+    private static final long DFPN_NODES = 1_000_000;   // pressupost de nodes del resolutor de finals
+    private static final long DFPN_NODES_MIN = 125_000; // pressupost mínim després de fracassos seguits
+
+    // Tipus de valor desat a la taula de transposició
+    private static final byte EXACTA = 0;
+    private static final byte COTA_INFERIOR = 1;     // fail-high: el valor real és >= valor
+    private static final byte COTA_SUPERIOR = 2;     // fail-low: el valor real és <= valor
+    private SearchStats stats;          // estadístiques de l'últim moviment
+    private final List<SearchListener> listeners; // observadors de la cerca
+    private int millorValorIteracio;    // valor del millor moviment de la iteració
+    private int valorArrel;             // valor de l'última cerca de l'arrel
+    private MultiPvAnalysis analisi;    // anàlisi de diverses variants en curs (o null)
+    private OpeningBook openingBook;    // llibre d'obertures (opcional)
+    private DfpnSolver solver;          // resolutor de finals (es crea en el primer final)
+    private int dfpnThreshold;          // caselles buides a partir de les quals es resol
+    private long pressupostDfpn = DFPN_NODES; // nodes del proper intent de DFPN
+    private int buidesDfpn = Integer.MAX_VALUE; // caselles buides de l'últim intent de DFPN
+    private PatternPolicy patternPolicy; // política de patrons per ordenar (opcional)
+    private CandidateGenerator candidates; // jugades candidates dels nodes interiors
+    private final ThreatDetector amenaces; // victòries immediates i blocatges obligats
+    private final TacticalMoves tactiques; // jugades de l'extensió tàctica de les fulles
+    private int pressupostTactic;       // nodes màxims de l'extensió tàctica per fulla
+    private int nodesTactics;           // nodes de l'extensió tàctica en curs
+    private boolean lmr;                // reduccions de jugades tardanes actives
+    private EvaluationCache evalCache;  // avaluacions ja calculades (opcional)
+    private boolean evalCacheFixada;    // s'ha triat la memòria cau (si no, es crea en el primer moviment)
+    private final int[] valorCache = new int[1];
+    private final SearchProgress progress = new SearchProgress(); // progrés per a la interfície
+    private PersistentTranspositionTable taulaPersistent; // taula desada en partides anteriors (opcional)
+    private boolean persistentActiva;   // la taula desada és de la mida del moviment en curs
+    private Path fitxerTaula;           // on es desa la part profunda de la taula
+    private int profunditatTaula;       // profunditat mínima de les entrades desades
+    private final Map<Long, Long> entradesProfundes = new HashMap<>(); // recollides en desar-les a la taula
+    private int midaTaula;              // mida del tauler de les entrades recollides
+    private boolean mantenirTaula;      // no s'esborra la taula de transposició entre moviments
 
     /**
      * Constructor de la classe HEXTEAM
@@ -34,99 +77,619 @@ public class HEXTEAM implements IPlayer, IAuto {
      * @param timeoutMillis temps màxim permès per moviment
      */
     public HEXTEAM(int initialDepth, PlayerType playerType, long timeoutMillis) {
+        this(initialDepth, playerType, timeoutMillis, HeuristicWeights.DEFAULT);
+    }
+
+    /**
+     * Constructor amb pesos de l'heurística ajustats (p. ex. llegits amb
+     * {@link HeuristicWeights#load}).
+     * @param initialDepth profunditat inicial per a la cerca IDS
+     * @param playerType tipus de jugador (PLAYER1 o PLAYER2)
+     * @param timeoutMillis temps màxim permès per moviment
+     * @param pesos pesos de {@link DijkstraHeuristic}
+     */
+    public HEXTEAM(int initialDepth, PlayerType playerType, long timeoutMillis, HeuristicWeights pesos) {
         this.maxDepth = initialDepth;
         this.playerType = playerType;
         this.timeout = false;
-        this.heuristic = new DijkstraHeuristic();
-        this.transpositionTable = new HashMap<>();
+        this.heuristic = new DijkstraHeuristic(pesos);
+        this.transpositionTable = new HeapTranspositionTable();
         this.timeoutMillis = timeoutMillis;
         this.depthsExplored = new ArrayList<>();
+        this.listeners = new ArrayList<>();
+        this.dfpnThreshold = -1;
+        this.candidates = new CandidateGenerator();
+        this.amenaces = new ThreatDetector();
+        this.tactiques = new TacticalMoves();
+        this.pressupostTactic = TacticalMoves.PRESSUPOST_PER_FULLA;
+        this.lmr = true;
+        if (pesos.equals(HeuristicWeights.DEFAULT)) {
+            setEvaluationCache(EvaluationCache.shared());
+        }
+    }
+
+    /**
+     * Canvia la taula de transposició (per defecte, {@link HeapTranspositionTable}).
+     * Amb una {@link OffHeapTranspositionTable} la taula pot ocupar diversos
+     * GB sense afectar les pauses del recol·lector.
+     * @param transpositionTable taula a fer servir
+     */
+    public void setTranspositionTable(TranspositionTable transpositionTable) {
+        this.transpositionTable = transpositionTable;
+    }
+
+    /**
+     * Canvia el temps màxim de cada moviment (per exemple, quan un motor de
+     * text rep un nou control de temps).
+     * @param timeoutMillis mil·lisegons per moviment
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Manté la taula de transposició d'un moviment al següent, en lloc
+     * d'esborrar-la a cada moviment. Les entrades continuen sent vàlides
+     * perquè la clau identifica la posició i el valor és sempre des del punt
+     * de vista d'aquest jugador; la taula només creix.
+     * @param mantenir cert per conservar-la
+     */
+    public void setKeepTranspositionTable(boolean mantenir) {
+        this.mantenirTaula = mantenir;
+    }
+
+    /**
+     * Fa servir una taula de transposició desada, de només lectura, quan la
+     * taula pròpia no té la posició, i recull les entrades de profunditat
+     * {@code minDepth} o més perquè {@link #saveTable()} les hi afegeixi.
+     * Si el fitxer encara no existeix, només es recullen.
+     * @param file fitxer de la taula ({@link PersistentTranspositionTable})
+     * @param minDepth profunditat mínima de les entrades que es desen
+     * @throws IOException si el fitxer existeix però no es pot llegir o és
+     *         d'un jugador de l'altre color
+     */
+    public void setPersistentTable(Path file, int minDepth) throws IOException {
+        PersistentTranspositionTable taula = null;
+        if (Files.exists(file)) {
+            taula = PersistentTranspositionTable.open(file);
+            if (taula.getColor() != colorPropi()) {
+                throw new IOException("La taula " + file + " és del jugador de l'altre color");
+            }
+        }
+        this.taulaPersistent = taula;
+        this.fitxerTaula = file;
+        this.profunditatTaula = minDepth;
+        entradesProfundes.clear();
+    }
+
+    /**
+     * Desa al fitxer de {@link #setPersistentTable} les entrades profundes de
+     * tots els moviments cercats fins ara, juntament amb les que ja hi havia;
+     * de cada posició es queda la de més profunditat i, si n'hi ha massa, es
+     * desen les més profundes. La taula desada que es fa servir no canvia
+     * fins que es torna a obrir.
+     * @return nombre d'entrades desades (0 si no s'ha desat res)
+     * @throws IOException si falla l'escriptura o si la taula que ja hi ha
+     *         és d'una altra mida de tauler
+     */
+    public int saveTable() throws IOException {
+        if (fitxerTaula == null || entradesProfundes.isEmpty()) {
+            return 0;
+        }
+        if (taulaPersistent != null && taulaPersistent.getSize() != midaTaula) {
+            throw new IOException("La taula " + fitxerTaula + " és de " + taulaPersistent.getSize() + "x"
+                    + taulaPersistent.getSize() + " i les entrades noves de " + midaTaula + "x" + midaTaula);
+        }
+        Map<Long, Long> totes = new HashMap<>(entradesProfundes);
+        if (taulaPersistent != null) {
+            taulaPersistent.forEach((clau, dades) -> afegeixMesProfunda(totes, clau, dades));
+        }
+        return PersistentTranspositionTable.write(fitxerTaula, midaTaula, colorPropi(), totes);
+    }
+
+    /**
+     * Guarda una entrada prou profunda per a {@link #saveTable()} a mesura
+     * que la cerca la desa, sense haver de recórrer la taula de transposició.
+     */
+    private void recullEntrada(long clau, long dades) {
+        afegeixMesProfunda(entradesProfundes, clau, dades);
+        if (entradesProfundes.size() > 2 * PersistentTranspositionTable.MAX_REGISTRES) {
+            // Només es desaran les més profundes: la resta no cal guardar-la
+            Set<Long> queden = new HashSet<>();
+            for (long c : PersistentTranspositionTable.mesProfundes(entradesProfundes,
+                    PersistentTranspositionTable.MAX_REGISTRES)) {
+                queden.add(c);
+            }
+            entradesProfundes.keySet().retainAll(queden);
+        }
+    }
+
+    private static void afegeixMesProfunda(Map<Long, Long> entrades, long clau, long dades) {
+        Long anterior = entrades.get(clau);
+        if (anterior == null || TranspositionTable.profunditat(anterior) < TranspositionTable.profunditat(dades)) {
+            entrades.put(clau, dades);
+        }
+    }
+
+    private int colorPropi() {
+        return playerType == PlayerType.PLAYER1 ? 1 : -1;
+    }
+
+    /**
+     * Canvia els pesos de l'heurística, per reaprofitar el jugador (i les
+     * seves taules ja reservades) amb uns altres pesos. La taula de
+     * transposició i la memòria cau de l'avaluació tenen valors calculats amb
+     * els pesos anteriors: la taula es buida i, si la memòria cau és la
+     * compartida i els pesos ja no són els originals, se'n crea una de pròpia
+     * en el proper moviment; si és una altra, també es buida.
+     * @param pesos pesos nous de {@link DijkstraHeuristic}
+     */
+    public void setWeights(HeuristicWeights pesos) {
+        this.heuristic = new DijkstraHeuristic(pesos);
+        transpositionTable.clear();
+        if (evalCache == EvaluationCache.shared()) {
+            if (!pesos.equals(HeuristicWeights.DEFAULT)) {
+                evalCache = null;
+                evalCacheFixada = false;
+            }
+        } else if (evalCache != null) {
+            evalCache.clear();
+        }
+    }
+
+    /**
+     * Canvia la memòria cau de l'avaluació; es pot compartir entre jugadors
+     * perquè cada entrada porta el punt de vista amb què s'ha avaluat, sempre
+     * que facin servir els mateixos {@link HeuristicWeights}. Per defecte, amb
+     * els pesos originals es fa servir {@link EvaluationCache#shared()} i, amb
+     * uns altres, una de pròpia creada en el primer moviment.
+     * @param evalCache memòria cau (null per avaluar sempre)
+     */
+    public void setEvaluationCache(EvaluationCache evalCache) {
+        this.evalCache = evalCache;
+        this.evalCacheFixada = true;
+    }
+
+    /**
+     * @return la memòria cau de l'avaluació, creant la pròpia si encara no
+     *         se n'ha triat cap (pot ser null)
+     */
+    private EvaluationCache memoriaCau() {
+        if (!evalCacheFixada) {
+            setEvaluationCache(new EvaluationCache());
+        }
+        return evalCache;
+    }
+
+    /**
+     * Activa o desactiva les reduccions de jugades tardanes (LMR) i les
+     * cerques amb finestra nul·la.
+     * @param lmr cert per reduir les jugades tardanes
+     */
+    public void setLateMoveReductions(boolean lmr) {
+        this.lmr = lmr;
+    }
+
+    /**
+     * Nombre màxim de nodes que pot afegir l'extensió tàctica a cada fulla.
+     * @param pressupostTactic nodes per fulla (0 per desactivar l'extensió)
+     */
+    public void setTacticalBudget(int pressupostTactic) {
+        this.pressupostTactic = pressupostTactic;
+    }
+
+    /**
+     * Canvia el generador de jugades candidates dels nodes interiors (per
+     * defecte només restringeix taulers de 11x11 o més).
+     * @param candidates generador (null per explorar sempre totes les jugades)
+     */
+    public void setCandidateGenerator(CandidateGenerator candidates) {
+        this.candidates = candidates;
+    }
+
+    /**
+     * Nombre de caselles buides per sota del qual s'intenta resoldre la
+     * posició amb DFPN abans de la cerca heurística. Per defecte és una
+     * cinquena part del tauler (24 caselles en 11x11, 16 en 9x9): amb
+     * {@code DfpnBench} i 2,5 s per posició, DFPN demostra 7 de 8 finals de
+     * 11x11 amb 24 buides però només 2 de 8 amb 40 (un terç del tauler), i
+     * 8 de 8 en 9x9 amb 16.
+     * @param dfpnThreshold llindar (0 per desactivar-ho, -1 per fer servir
+     *        una cinquena part del tauler)
+     */
+    public void setDfpnThreshold(int dfpnThreshold) {
+        this.dfpnThreshold = dfpnThreshold;
+    }
+
+    /**
+     * Afegeix un observador que rep les estadístiques de cada iteració i moviment.
+     * @param listener observador
+     */
+    public void addSearchListener(SearchListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeSearchListener(SearchListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Fa servir un llibre d'obertures: si la posició hi és, es juga sense cercar.
+     * @param openingBook llibre d'obertures (null per desactivar-lo)
+     */
+    public void setOpeningBook(OpeningBook openingBook) {
+        this.openingBook = openingBook;
+    }
+
+    /**
+     * Ordena les jugades dels nodes interiors segons una política de patrons.
+     * @param patternPolicy política entrenada (null per no ordenar-les)
+     */
+    public void setPatternPolicy(PatternPolicy patternPolicy) {
+        this.patternPolicy = patternPolicy;
+    }
+
+    /**
+     * Escalfa el JIT amb una instància a part, de manera que la taula, les
+     * estadístiques i els observadors d'aquest jugador no canvien.
+     */
+    @Override
+    public long warmUp(int size, long maxMillis) {
+        HEXTEAM escalfament = new HEXTEAM(maxDepth, playerType, WARMUP_MILLIS, heuristic.getWeights());
+        escalfament.setEvaluationCache(memoriaCau());
+        escalfament.setTacticalBudget(pressupostTactic);
+        return WarmUpRunner.run(size, playerType, maxMillis, joc -> escalfament.move(joc));
+    }
+
+    @Override
+    public SearchProgress getSearchProgress() {
+        return progress;
+    }
+
+    /**
+     * @return estadístiques de l'últim moviment cercat (o null si encara no n'hi ha)
+     */
+    public SearchStats getLastSearchStats() {
+        return stats;
+    }
+
+    /**
+     * Analitza una posició: cerca com {@link #move} (sense llibre, jugades
+     * forçades ni DFPN, que no donen variants) i, a cada iteració completada,
+     * obté les {@code k} millors jugades de l'arrel amb el seu valor i la
+     * variant principal. Les variants a partir de la segona es calculen
+     * tornant a cercar l'arrel sense les ja triades, amb la mateixa taula de
+     * transposició, en lloc de fer k cerques independents.
+     * @param joc posició, amb el torn d'aquest jugador
+     * @param k nombre de variants
+     * @return variants de cada iteració completada dins el temps límit
+     */
+    public MultiPvAnalysis analyse(HexGameStatus joc, int k) {
+        if (joc.getCurrentPlayer() != playerType) {
+            throw new IllegalArgumentException("La posició no és del torn de " + playerType);
+        }
+        MultiPvAnalysis resultat = new MultiPvAnalysis(Math.max(1, k));
+        analisi = resultat;
+        try {
+            move(joc);
+        } finally {
+            analisi = null;
+        }
+        return resultat;
     }
 
     @Override
     public PlayerMove move(HexGameStatus joc) {
         timeout = false;
         nodesExplored = 0;
-        transpositionTable.clear();
+        memoriaCau();
+        if (!mantenirTaula) {
+            transpositionTable.clear();
+        }
+        if (fitxerTaula != null && joc.getSize() != midaTaula) {
+            entradesProfundes.clear();
+            midaTaula = joc.getSize();
+        }
+        persistentActiva = taulaPersistent != null && taulaPersistent.getSize() == joc.getSize();
+        depthsExplored.clear();
+        stats = new SearchStats(getName());
+        progress.reset(joc.getSize());
         startTime = System.currentTimeMillis();
+        MoveSearchEvent eventMoviment = new MoveSearchEvent();
+        eventMoviment.begin();
 
-        Point millorMoviment = null;
+        // Llibre, jugades forçades i finals resolts no necessiten la cerca
+        Point millorMoviment = analisi == null ? jugadaSenseCerca(joc) : null;
+        boolean cerca = millorMoviment == null;
         int profunditatActual = 1;
 
         // Bucle de IDS
-        while (!timeout && profunditatActual <= maxDepth) {
-            long currentTime = System.currentTimeMillis() - startTime;
+        while (cerca && !timeout && profunditatActual <= maxDepth) {
+            long iniciIteracio = System.nanoTime();
+            long nodesInici = nodesExplored;
+            IterationCompletedEvent eventIteracio = new IterationCompletedEvent();
+            eventIteracio.begin();
+            progress.beginIteration(profunditatActual);
             try {
                 millorMoviment = cercaMillorMoviment(joc, profunditatActual);
                 depthsExplored.add(profunditatActual); // Registrar la profunditat explorada
             } catch (ExcepcioTempsEsgotat e) {
                 break;
             }
+            stats.nodes = nodesExplored;
+            SearchStats.Iteration it = stats.addIteration(profunditatActual, nodesInici,
+                    System.nanoTime() - iniciIteracio, millorMoviment, millorValorIteracio);
+            if (eventIteracio.shouldCommit()) {
+                eventIteracio.player = getName();
+                eventIteracio.depth = profunditatActual;
+                eventIteracio.nodes = it.getNodes();
+                eventIteracio.bestMove = String.valueOf(millorMoviment);
+                eventIteracio.score = millorValorIteracio;
+                eventIteracio.commit();
+            }
+            for (SearchListener l : listeners) {
+                l.onIterationCompleted(stats, it);
+            }
             profunditatActual++;
         }
 
+        if (millorMoviment == null) {
+            // Totes les jugades perden: allarguem la partida tant com es pugui
+            millorMoviment = jugadaResistencia(joc);
+        }
+
+        stats.nodes = nodesExplored;
+        stats.finish();
+        if (eventMoviment.shouldCommit()) {
+            eventMoviment.player = getName();
+            eventMoviment.depth = profunditatActual - 1;
+            eventMoviment.nodes = nodesExplored;
+            eventMoviment.commit();
+        }
+        for (SearchListener l : listeners) {
+            l.onSearchCompleted(stats);
+        }
+
         return new PlayerMove(millorMoviment, nodesExplored, profunditatActual - 1, SearchType.MINIMAX_IDS);
     }
  
+    /**
+     * Jugades que no necessiten la cerca heurística: la del llibre
+     * d'obertures, una victòria immediata o un blocatge obligat, i la dels
+     * finals que DFPN demostra guanyats o perduts.
+     * @return la jugada, o null si cal cercar
+     */
+    private Point jugadaSenseCerca(HexGameStatus joc) {
+        if (openingBook != null) {
+            Point jugadaLlibre = openingBook.lookup(joc);
+            if (jugadaLlibre != null) {
+                return jugadaLlibre;
+            }
+        }
+
+        // Victòria immediata o blocatge obligat
+        amenaces.analyse(joc);
+        Point forcada = amenaces.forcedMove(joc.getCurrentPlayerColor());
+        if (forcada != null) {
+            return forcada;
+        }
+
+        // Final de partida: si la posició es pot demostrar, no cal cercar
+        int llindar = dfpnThreshold < 0 ? joc.getSize() * joc.getSize() / 5 : dfpnThreshold;
+        int buides = comptaBuides(joc);
+        if (buides <= llindar) {
+            if (solver == null) {
+                // La taula del resolutor ocupa 16 MB: només la paguen els jugadors que arriben al final
+                solver = new DfpnSolver(20);
+            }
+            if (buides > buidesDfpn) {
+                // Partida nova: es recupera el pressupost sencer
+                pressupostDfpn = DFPN_NODES;
+            }
+            buidesDfpn = buides;
+            DfpnSolver.Status resultat = solver.solve(joc, pressupostDfpn, startTime + timeoutMillis / 2);
+            nodesExplored += solver.getNodes();
+            // Si no s'ha pogut demostrar, el proper intent (amb la taula ja
+            // calenta) gasta la meitat: es deixa més temps a la cerca heurística
+            pressupostDfpn = resultat == DfpnSolver.Status.UNKNOWN
+                    ? Math.max(DFPN_NODES_MIN, pressupostDfpn / 2) : DFPN_NODES;
+            // La jugada guanyadora surt de la taula del resolutor, que és amb
+            // pèrdues: si s'ha sobreescrit, la busca la cerca heurística
+            if (resultat == DfpnSolver.Status.WIN && solver.getBestMove() != null) {
+                return solver.getBestMove();
+            }
+            if (resultat == DfpnSolver.Status.LOSS) {
+                return jugadaResistencia(joc);
+            }
+        }
+        return null;
+    }
+
     /** 
      * Cerca el millor moviment per a un nivell de profunditat concret.
+     * Durant una anàlisi ({@link #analyse}), després de trobar-lo torna a
+     * cercar l'arrel excloent les jugades ja triades per obtenir el valor
+     * exacte de les següents; la taula de transposició compartida fa que
+     * aquestes cerques siguin molt més barates que la primera.
      * @throws ExcepcioTempsEsgotat si s'excedeix el temps límit
      */
     private Point cercaMillorMoviment(HexGameStatus joc, int profunditat) throws ExcepcioTempsEsgotat {
-        int millorValor = Integer.MIN_VALUE;
-        Point millorMoviment = null;
         List<MoveNode> moviments = joc.getMoves();
+        long clau = Zobrist.clau(joc);
+        long clauRotada = Zobrist.clauRotada(joc);
 
         // Ordenem els moviments segons la heurística, per millorar la poda
-        moviments.sort((a, b) -> {
-            HexGameStatus jocA = new HexGameStatus(joc);
-            jocA.placeStone(a.getPoint());
-            HexGameStatus jocB = new HexGameStatus(joc);
-            jocB.placeStone(b.getPoint());
-            return Integer.compare(
-                heuristic.avalua(jocB, playerType),
-                heuristic.avalua(jocA, playerType)
-            );
-        });
-
-        // Explorem els moviments (Minimax + poda alfa-beta) 
+        int n = joc.getSize();
+        int[] valorFill = new int[n * n];
+        long iniciAvaluacio = System.nanoTime();
+        heuristic.avaluaFills(joc, playerType, valorFill);
+        stats.evalNanos += System.nanoTime() - iniciAvaluacio;
+        stats.evalCalls++;
+        moviments.sort((a, b) -> Integer.compare(valorFill[b.getPoint().x * n + b.getPoint().y],
+                valorFill[a.getPoint().x * n + a.getPoint().y]));
+
+        int millor = cercaArrel(joc, profunditat, moviments, null, clau, clauRotada);
+        int millorValor = valorArrel;
+        millorValorIteracio = millorValor;
+        if (analisi != null && millor >= 0) {
+            // Variants següents: es torna a cercar l'arrel sense les jugades ja triades
+            boolean[] exclosa = new boolean[n * n];
+            List<MultiPvAnalysis.Line> linies = new ArrayList<>();
+            int c = millor;
+            int valor = millorValor;
+            while (c >= 0) {
+                exclosa[c] = true;
+                linies.add(new MultiPvAnalysis.Line(new Point(c / n, c % n), valor,
+                        variantPrincipal(joc, c, profunditat)));
+                if (linies.size() >= analisi.getRequestedLines()) {
+                    break;
+                }
+                c = cercaArrel(joc, profunditat, moviments, exclosa, clau, clauRotada);
+                valor = valorArrel;
+            }
+            analisi.add(new MultiPvAnalysis.Iteration(profunditat, nodesExplored, linies));
+        }
+        return millor < 0 ? null : new Point(millor / n, millor % n);
+    }
+
+    /**
+     * Explora les jugades de l'arrel (Minimax + poda alfa-beta). Després de
+     * la primera, cada jugada només ha de demostrar que és millor: finestra
+     * nul·la i, si la supera, cerca completa. El valor de la millor jugada és
+     * exacte i queda a {@link #valorArrel}.
+     * @param moviments jugades ja ordenades
+     * @param exclosa caselles que no s'han de considerar (null si cap); en
+     *        aquest cas el progrés no canvia de millor jugada
+     * @return la millor casella ({@code x * n + y}), o -1 si no n'hi ha cap
+     * @throws ExcepcioTempsEsgotat si s'excedeix el temps límit
+     */
+    private int cercaArrel(HexGameStatus joc, int profunditat, List<MoveNode> moviments, boolean[] exclosa,
+            long clau, long clauRotada) throws ExcepcioTempsEsgotat {
+        int n = joc.getSize();
+        int color = joc.getCurrentPlayerColor();
+        int millorValor = Integer.MIN_VALUE;
+        int millorCasella = -1;
         for (MoveNode moviment : moviments) {
+            Point p = moviment.getPoint();
+            if (exclosa != null && exclosa[p.x * n + p.y]) {
+                continue;
+            }
             comprovaTemps();
             HexGameStatus nouJoc = new HexGameStatus(joc);
-            nouJoc.placeStone(moviment.getPoint());
-            int valor = minimax(nouJoc, profunditat - 1, Integer.MIN_VALUE, Integer.MAX_VALUE, false);
+            nouJoc.placeStone(p);
+            long clauFill = clau ^ Zobrist.clau(n, p.x, p.y, color);
+            long clauRotadaFill = clauRotada ^ Zobrist.clauRotada(n, p.x, p.y, color);
+            long nodesJugada = nodesExplored;
+            int valor;
+            if (lmr && millorCasella >= 0) {
+                if (millorValor == Integer.MAX_VALUE) {
+                    break;
+                }
+                valor = minimax(nouJoc, profunditat - 1, millorValor, millorValor + 1, false, clauFill, clauRotadaFill);
+                if (valor > millorValor) {
+                    stats.reSearches++;
+                    valor = minimax(nouJoc, profunditat - 1, millorValor, Integer.MAX_VALUE, false, clauFill, clauRotadaFill);
+                }
+            } else {
+                valor = minimax(nouJoc, profunditat - 1, Integer.MIN_VALUE, Integer.MAX_VALUE, false,
+                        clauFill, clauRotadaFill);
+            }
 
-            if (valor > millorValor) {
+            boolean millora = valor > millorValor;
+            if (millora) {
                 millorValor = valor;
-                millorMoviment = moviment.getPoint();
-            } 
+                millorCasella = p.x * n + p.y;
+            }
+            progress.update(p.x * n + p.y, valor, nodesExplored - nodesJugada, millora && exclosa == null);
+        }
+        valorArrel = millorValor;
+        return millorCasella;
+    }
+
+    /**
+     * Variant principal d'una jugada de l'arrel: la jugada i, a continuació,
+     * les millors jugades desades a la taula de transposició, mentre siguin
+     * legals i no s'acabi la partida.
+     */
+    private List<Point> variantPrincipal(HexGameStatus joc, int casella, int profunditat) {
+        int n = joc.getSize();
+        List<Point> pv = new ArrayList<>();
+        HexGameStatus pos = new HexGameStatus(joc);
+        int c = casella;
+        while (c >= 0 && pv.size() < profunditat && !pos.isGameOver()) {
+            Point p = new Point(c / n, c % n);
+            if (pos.getPos(p) != 0) {
+                break;
+            }
+            pv.add(p);
+            pos.placeStone(p);
+            long clau = Zobrist.clau(pos);
+            long clauRotada = Zobrist.clauRotada(pos);
+            boolean rotada = Long.compareUnsigned(clauRotada, clau) < 0;
+            long entrada = transpositionTable.probe(rotada ? clauRotada : clau);
+            int jugada = entrada == 0 ? -1 : TranspositionTable.jugada(entrada);
+            c = jugada < 0 ? -1 : rotada ? n * n - 1 - jugada : jugada;
         }
-        return millorMoviment;
+        return pv;
     }
-     public List<Integer> getDepthsExplored() {
+
+    /**
+     * @return profunditats completades per l'IDS durant l'últim moviment
+     */
+    public List<Integer> getDepthsExplored() {
         return depthsExplored;
     }
     /** 
      * Implementació de Minimax amb poda alfa-beta i taula de transposició.
+     *
+     * La taula es consulta amb la clau canònica (la menor entre la clau de la
+     * posició i la de la seva rotació de 180°), de manera que les dues
+     * orientacions comparteixen entrada. La millor jugada es desa en
+     * l'orientació canònica i es torna a rotar en llegir-la. Cada entrada diu
+     * si el valor és exacte o només una cota, perquè les cerques amb finestra
+     * nul·la no la facin servir com a valor exacte.
+     *
+     * Els fills tardans (després dels {@value #LMR_JUGADES} primers, fora de
+     * la jugada de la taula, dels blocatges obligats i de les jugades
+     * tàctiques) s'exploren amb profunditat reduïda i finestra nul·la; si
+     * superen la finestra, es tornen a cercar a profunditat completa.
+     *
+     * @param clau clau de Zobrist de la posició
+     * @param clauRotada clau de Zobrist de la posició rotada 180°
      * @throws ExcepcioTempsEsgotat si s'excedeix el temps límit
      */ 
-    private int minimax(HexGameStatus joc, int profunditat, int alpha, int beta, boolean esMaximitzant) throws ExcepcioTempsEsgotat {
+    private int minimax(HexGameStatus joc, int profunditat, int alpha, int beta, boolean esMaximitzant,
+            long clau, long clauRotada) throws ExcepcioTempsEsgotat {
         comprovaTemps();
         nodesExplored++;
+        int n = joc.getSize();
  
         // Càlcul o recuperació de la transposició
-        long hashJoc = calculaHash(joc);
-        if (transpositionTable.containsKey(hashJoc)) {
-            TranspositionEntry entrada = transpositionTable.get(hashJoc);
-            if (entrada.depth >= profunditat) {
-                if (entrada.alpha >= beta) {
-                    return entrada.alpha;
-                }
-                if (entrada.beta <= alpha) {
-                    return entrada.beta;
+        boolean rotada = Long.compareUnsigned(clauRotada, clau) < 0;
+        long hashJoc = rotada ? clauRotada : clau;
+        int jugadaTaula = -1;
+        int alphaInicial = alpha;
+        int betaInicial = beta;
+        stats.ttProbes++;
+        long entrada = transpositionTable.probe(hashJoc);
+        if (entrada == 0 && persistentActiva) {
+            entrada = taulaPersistent.probe(hashJoc);
+        }
+        if (entrada != 0) {
+            stats.ttHits++;
+            int jugada = TranspositionTable.jugada(entrada);
+            if (jugada >= 0) {
+                jugadaTaula = rotada ? n * n - 1 - jugada : jugada;
+            }
+            if (TranspositionTable.profunditat(entrada) >= profunditat) {
+                int tipus = TranspositionTable.tipus(entrada);
+                int valor = TranspositionTable.valor(entrada);
+                if (tipus == EXACTA
+                        || (tipus == COTA_INFERIOR && valor >= beta)
+                        || (tipus == COTA_SUPERIOR && valor <= alpha)) {
+                    stats.ttCutoffs++;
+                    return valor;
                 }
-                alpha = Math.max(alpha, entrada.alpha);
-                beta = Math.min(beta, entrada.beta);
             }
         }
 
@@ -143,22 +706,108 @@ public class HEXTEAM implements IPlayer, IAuto {
             return 0;
         }
 
+        // Extensió d'amenaces: si qui mou guanya a la jugada següent, o l'oponent
+        // en té dues i no les pot bloquejar totes, el resultat ja és conegut
+        amenaces.analyse(joc);
+        int color = joc.getCurrentPlayerColor();
+        if (amenaces.countWins(color) > 0) {
+            return puntuacioFinal(joc.getCurrentPlayer(), profunditat - 1);
+        }
+        if (amenaces.countWins(-color) > 1) {
+            return puntuacioFinal(PlayerType.opposite(joc.getCurrentPlayer()), profunditat - 2);
+        }
+        int bloqueig = amenaces.countWins(-color) == 1 ? amenaces.winCell(-color, 0) : -1;
+
         // Si hem arribat a la profunditat 0, avaluem
         if (profunditat == 0) { 
-            int evaluacio = heuristic.avalua(joc, playerType);
-            transpositionTable.put(hashJoc, new TranspositionEntry(evaluacio, alpha, beta, profunditat));
+            nodesTactics = 0;
+            int evaluacio = quiescencia(joc, alpha, beta, esMaximitzant, 0, bloqueig, clau, clauRotada);
+            transpositionTable.store(hashJoc, TranspositionTable.pack(evaluacio, profunditat,
+                    tipus(evaluacio, alphaInicial, betaInicial), -1));
             return evaluacio; 
         }
  
         // Minimax recursiu 
         int millorPuntuacio = esMaximitzant ? Integer.MIN_VALUE : Integer.MAX_VALUE;
-        List<MoveNode> moviments = joc.getMoves(); 
+        List<MoveNode> moviments;
+        if (bloqueig >= 0) {
+            // Blocatge obligat: és l'única jugada que no perd immediatament
+            moviments = new ArrayList<>();
+            moviments.add(new MoveNode(new Point(bloqueig / n, bloqueig % n)));
+        } else {
+            moviments = candidates == null ? joc.getMoves() : candidates.generate(joc);
+        }
+        stats.interiorNodes++;
+        if (patternPolicy != null) {
+            float[] prior = patternPolicy.score(joc);
+            moviments.sort((a, b) -> Float.compare(prior[b.getPoint().x * n + b.getPoint().y],
+                    prior[a.getPoint().x * n + a.getPoint().y]));
+        }
+        if (jugadaTaula >= 0) {
+            // La millor jugada d'una cerca anterior es prova primer
+            for (int i = 1; i < moviments.size(); i++) {
+                Point p = moviments.get(i).getPoint();
+                if (p.x * n + p.y == jugadaTaula) {
+                    moviments.add(0, moviments.remove(i));
+                    break;
+                }
+            }
+        }
+        int millorJugada = -1;
 
-        for (MoveNode moviment : moviments) { 
+        // Les jugades tàctiques de la posició no es redueixen mai
+        boolean reduible = lmr && bloqueig < 0 && profunditat >= LMR_PROFUNDITAT
+                && moviments.size() > LMR_JUGADES;
+        boolean[] tactica = null;
+        if (reduible) {
+            int[] jugades = new int[n * n];
+            int k = tactiques.generate(joc, jugades);
+            tactica = new boolean[n * n];
+            for (int i = 0; i < k; i++) {
+                tactica[jugades[i]] = true;
+            }
+        }
+
+        for (int i = 0; i < moviments.size(); i++) { 
+            MoveNode moviment = moviments.get(i);
+            Point p = moviment.getPoint();
+            stats.childrenSearched++;
             HexGameStatus nouJoc = new HexGameStatus(joc);
-            nouJoc.placeStone(moviment.getPoint());
+            nouJoc.placeStone(p);
+            long clauFill = clau ^ Zobrist.clau(n, p.x, p.y, color);
+            long clauRotadaFill = clauRotada ^ Zobrist.clauRotada(n, p.x, p.y, color);
 
-            int puntuacio = minimax(nouJoc, profunditat - 1, alpha, beta, !esMaximitzant);
+            int puntuacio;
+            if (i == 0 || !lmr) {
+                puntuacio = minimax(nouJoc, profunditat - 1, alpha, beta, !esMaximitzant, clauFill, clauRotadaFill);
+            } else {
+                // Finestra nul·la al voltant de la cota que cal superar
+                int nulAlpha = esMaximitzant ? alpha : beta - 1;
+                int nulBeta = nulAlpha + 1;
+                int reduccio = 0;
+                if (reduible && i >= LMR_JUGADES && !tactica[p.x * n + p.y]) {
+                    reduccio = i >= LMR_TARDANA && profunditat > LMR_PROFUNDITAT ? 2 : 1;
+                    stats.reductions++;
+                }
+                puntuacio = minimax(nouJoc, profunditat - 1 - reduccio, nulAlpha, nulBeta, !esMaximitzant,
+                        clauFill, clauRotadaFill);
+                boolean supera = esMaximitzant ? puntuacio > alpha : puntuacio < beta;
+                if (supera && reduccio > 0) {
+                    // La cerca reduïda no és fiable: es repeteix a profunditat completa
+                    stats.reSearches++;
+                    puntuacio = minimax(nouJoc, profunditat - 1, nulAlpha, nulBeta, !esMaximitzant,
+                            clauFill, clauRotadaFill);
+                    supera = esMaximitzant ? puntuacio > alpha : puntuacio < beta;
+                }
+                if (supera && (esMaximitzant ? puntuacio < beta : puntuacio > alpha)) {
+                    // Dins la finestra: cal el valor exacte
+                    stats.reSearches++;
+                    puntuacio = minimax(nouJoc, profunditat - 1, alpha, beta, !esMaximitzant, clauFill, clauRotadaFill);
+                }
+            }
+            if (millorJugada < 0 || (esMaximitzant ? puntuacio > millorPuntuacio : puntuacio < millorPuntuacio)) {
+                millorJugada = p.x * n + p.y;
+            }
 
             if (esMaximitzant) { 
                 millorPuntuacio = Math.max(millorPuntuacio, puntuacio);
@@ -169,27 +818,189 @@ public class HEXTEAM implements IPlayer, IAuto {
             }
 
             if (beta <= alpha) {
+                stats.cutoffs++;
+                if (i == 0) {
+                    stats.firstMoveCutoffs++;
+                }
                 break;
             }
         }
 
-        transpositionTable.put(hashJoc, new TranspositionEntry(millorPuntuacio, alpha, beta, profunditat));
+        if (rotada && millorJugada >= 0) {
+            millorJugada = n * n - 1 - millorJugada;
+        }
+        long dades = TranspositionTable.pack(millorPuntuacio, profunditat,
+                tipus(millorPuntuacio, alphaInicial, betaInicial), millorJugada);
+        transpositionTable.store(hashJoc, dades);
+        if (fitxerTaula != null && profunditat >= profunditatTaula) {
+            recullEntrada(hashJoc, dades);
+        }
         return millorPuntuacio;
     }
 
     /**
-     * Genera un hash únic per a l'estat actual del tauler. 
+     * Extensió tàctica de les fulles: a partir de l'avaluació estàtica, només
+     * explora reparacions de pont i jugades sobre camins mínims crítics
+     * ({@link TacticalMoves}), amb un pressupost de nodes per fulla. Si hi ha
+     * un blocatge obligat, és l'única jugada i no es pot plantar.
+     *
+     * Les victòries immediates ja les ha tractat qui crida.
+     *
+     * @param bloqueig casella que cal bloquejar, o -1
+     * @param clau clau de Zobrist de la posició
+     * @param clauRotada clau de Zobrist de la posició rotada 180°
+     * @throws ExcepcioTempsEsgotat si s'excedeix el temps límit
      */
-    private long calculaHash(HexGameStatus joc) {
-        long hash = 0;
+    private int quiescencia(HexGameStatus joc, int alpha, int beta, boolean esMaximitzant, int ply, int bloqueig,
+            long clau, long clauRotada) throws ExcepcioTempsEsgotat {
+        int n = joc.getSize();
+        int color = joc.getCurrentPlayerColor();
+        int[] jugades = new int[n * n];
+        int k;
+        int millor;
+        if (bloqueig >= 0 && ply > 0) {
+            jugades[0] = bloqueig;
+            k = 1;
+            millor = esMaximitzant ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        } else {
+            // Hex no té zugzwang: qui mou sempre pot quedar-se amb l'avaluació estàtica
+            millor = avalua(joc, clau, clauRotada);
+            if (ply >= TacticalMoves.MAX_PLY || nodesTactics >= pressupostTactic) {
+                return millor;
+            }
+            if (esMaximitzant ? millor >= beta : millor <= alpha) {
+                return millor;
+            }
+            k = tactiques.generate(joc, jugades);
+        }
+
+        for (int i = 0; i < k && nodesTactics < pressupostTactic; i++) {
+            comprovaTemps();
+            nodesTactics++;
+            nodesExplored++;
+            int x = jugades[i] / n;
+            int y = jugades[i] % n;
+            HexGameStatus nouJoc = new HexGameStatus(joc);
+            nouJoc.placeStone(new Point(x, y));
+
+            int puntuacio;
+            if (nouJoc.isGameOver()) {
+                puntuacio = puntuacioFinal(nouJoc.GetWinner(), 0);
+            } else {
+                amenaces.analyse(nouJoc);
+                if (amenaces.countWins(-color) > 0) {
+                    puntuacio = puntuacioFinal(nouJoc.getCurrentPlayer(), 0);
+                } else if (amenaces.countWins(color) > 1) {
+                    puntuacio = puntuacioFinal(PlayerType.opposite(nouJoc.getCurrentPlayer()), 0);
+                } else {
+                    int bloqueigFill = amenaces.countWins(color) == 1 ? amenaces.winCell(color, 0) : -1;
+                    puntuacio = quiescencia(nouJoc, alpha, beta, !esMaximitzant, ply + 1, bloqueigFill,
+                            clau ^ Zobrist.clau(n, x, y, color), clauRotada ^ Zobrist.clauRotada(n, x, y, color));
+                }
+            }
+
+            if (esMaximitzant) {
+                millor = Math.max(millor, puntuacio);
+                alpha = Math.max(alpha, millor);
+            } else {
+                millor = Math.min(millor, puntuacio);
+                beta = Math.min(beta, millor);
+            }
+            if (beta <= alpha) {
+                break;
+            }
+        }
+        if (millor == Integer.MIN_VALUE || millor == Integer.MAX_VALUE) {
+            // Blocatge obligat sense pressupost per explorar-lo
+            millor = avalua(joc, clau, clauRotada);
+        }
+        return millor;
+    }
+
+    /**
+     * Jugada de màxima resistència per a posicions perdudes: la que més allarga
+     * el camí mínim de l'oponent, desempatant per l'heurística.
+     */
+    private Point jugadaResistencia(HexGameStatus joc) {
+        Point millor = null;
+        int millorDistancia = Integer.MIN_VALUE;
+        int millorValor = Integer.MIN_VALUE;
+        for (MoveNode moviment : joc.getMoves()) {
+            HexGameStatus nouJoc = new HexGameStatus(joc);
+            nouJoc.placeStone(moviment.getPoint());
+            int distancia = heuristic.dijkstra(nouJoc, PlayerType.opposite(playerType));
+            int valor = avalua(nouJoc, Zobrist.clau(nouJoc), Zobrist.clauRotada(nouJoc));
+            if (distancia > millorDistancia || (distancia == millorDistancia && valor > millorValor)) {
+                millorDistancia = distancia;
+                millorValor = valor;
+                millor = moviment.getPoint();
+            }
+        }
+        return millor;
+    }
+
+    private static int comptaBuides(HexGameStatus joc) {
+        int buides = 0;
         for (int i = 0; i < joc.getSize(); i++) {
             for (int j = 0; j < joc.getSize(); j++) {
-                hash = hash * 31 + joc.getPos(i, j);
+                if (joc.getPos(i, j) == 0) {
+                    buides++;
+                }
             }
         }
-        return hash;
+        return buides;
     }
- 
+
+    /**
+     * Avalua el tauler des del punt de vista del jugador, comptant-ho a les
+     * estadístiques. Si la posició (o la seva rotació de 180°, que té el
+     * mateix valor) ja s'ha avaluat, es reaprofita el valor de la memòria cau.
+     * @param clau clau de Zobrist de la posició
+     * @param clauRotada clau de Zobrist de la posició rotada 180°
+     */
+    private int avalua(HexGameStatus joc, long clau, long clauRotada) {
+        long clauCache = 0;
+        if (evalCache != null) {
+            long canonica = Long.compareUnsigned(clauRotada, clau) < 0 ? clauRotada : clau;
+            clauCache = EvaluationCache.key(canonica, playerType == PlayerType.PLAYER1 ? 1 : -1);
+            if (evalCache.probe(clauCache, valorCache)) {
+                stats.evalCacheHits++;
+                return valorCache[0];
+            }
+        }
+        long inici = System.nanoTime();
+        int valor = heuristic.avalua(joc, playerType);
+        stats.evalNanos += System.nanoTime() - inici;
+        stats.evalCalls++;
+        if (evalCache != null) {
+            evalCache.store(clauCache, valor);
+        }
+        return valor;
+    }
+
+    /**
+     * Puntuació d'una partida que guanyarà {@code guanyador} quan quedin
+     * {@code profunditat} nivells, amb el mateix criteri que els nodes finals.
+     */
+    private int puntuacioFinal(PlayerType guanyador, int profunditat) {
+        int p = Math.max(profunditat, 0);
+        return guanyador == playerType ? Integer.MAX_VALUE - p : Integer.MIN_VALUE + p;
+    }
+
+    /**
+     * Tipus d'entrada de la taula per a un valor obtingut amb la finestra
+     * (alpha, beta) inicial del node.
+     */
+    private static byte tipus(int valor, int alpha, int beta) {
+        if (valor <= alpha) {
+            return COTA_SUPERIOR;
+        }
+        if (valor >= beta) {
+            return COTA_INFERIOR;
+        }
+        return EXACTA;
+    }
+
     /**
      * Comprova si ha expirat el temps límit.
      * @throws ExcepcioTempsEsgotat si el temps ha expirat
@@ -217,22 +1028,6 @@ public class HEXTEAM implements IPlayer, IAuto {
         return "HEXTEAM";
     }
 
-    /**
-     * Classe interna per guardar informació a la taula de transposició.
-     */
-    private static class TranspositionEntry {
-        int millorPuntuacio;
-        int alpha;
-        int beta;
-        int depth;
-
-        public TranspositionEntry(int millorPuntuacio, int alpha, int beta, int depth) {
-            this.millorPuntuacio = millorPuntuacio;
-            this.alpha = alpha;
-            this.beta = beta;
-            this.depth = depth;
-        }
-    }
  
     /**
      * Excepció personalitzada per indicar que el temps s'ha esgotat.
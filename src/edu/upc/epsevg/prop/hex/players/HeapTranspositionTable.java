@@ -0,0 +1,36 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Taula de transposició al heap, sense límit de mida: un {@link HashMap}
+ * de clau a dades empaquetades. És la taula per defecte de HEXTEAM.
+ */
+public class HeapTranspositionTable implements TranspositionTable {
+
+    private final Map<Long, Long> entrades = new HashMap<>();
+
+    @Override
+    public long probe(long clau) {
+        Long dades = entrades.get(clau);
+        return dades == null ? 0 : dades;
+    }
+
+    @Override
+    public void store(long clau, long dades) {
+        entrades.put(clau, dades);
+    }
+
+    @Override
+    public void clear() {
+        entrades.clear();
+    }
+
+    @Override
+    public void forEach(EntryVisitor visitor) {
+        for (Map.Entry<Long, Long> e : entrades.entrySet()) {
+            visitor.visit(e.getKey(), e.getValue());
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Pesos dels termes de {@link DijkstraHeuristic}:
+ * <pre>
+ *   valor = round(opponentDistance * dOponent - playerDistance * dJugador
+ *                 + connectivity * connectivitat + block * blocatge)
+ * </pre>
+ * Amb tots els pesos a 1 ({@link #DEFAULT}) el valor és exactament la suma
+ * entera original. Els pesos són immutables i es desen en un fitxer de
+ * propietats ({@code nom=valor}) que generen eines com {@code SpsaTuner}.
+ */
+public final class HeuristicWeights {
+
+    /**
+     * Noms dels pesos, en l'ordre de {@link #toArray()}.
+     */
+    public static final String[] NAMES = {"opponentDistance", "playerDistance", "connectivity", "block"};
+
+    /**
+     * Pesos originals de l'heurística (tots 1).
+     */
+    public static final HeuristicWeights DEFAULT = new HeuristicWeights(new double[]{1, 1, 1, 1});
+
+    private final double[] pesos;
+    private final boolean unitaris;
+
+    private HeuristicWeights(double[] pesos) {
+        this.pesos = pesos;
+        boolean totsU = true;
+        for (double p : pesos) {
+            totsU &= p == 1;
+        }
+        this.unitaris = totsU;
+    }
+
+    /**
+     * @param pesos un valor per a cada nom de {@link #NAMES}, en el mateix ordre
+     * @return els pesos donats
+     */
+    public static HeuristicWeights of(double... pesos) {
+        if (pesos.length != NAMES.length) {
+            throw new IllegalArgumentException("Calen " + NAMES.length + " pesos, n'hi ha " + pesos.length);
+        }
+        return new HeuristicWeights(pesos.clone());
+    }
+
+    /**
+     * Llegeix un fitxer de pesos. Els pesos que no hi són valen 1.
+     * @param file fitxer de propietats
+     * @return pesos llegits
+     * @throws IOException si el fitxer no es pot llegir o té valors no numèrics
+     */
+    public static HeuristicWeights load(Path file) throws IOException {
+        Properties p = new Properties();
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            p.load(in);
+        }
+        double[] pesos = new double[NAMES.length];
+        for (int i = 0; i < NAMES.length; i++) {
+            try {
+                pesos[i] = Double.parseDouble(p.getProperty(NAMES[i], "1"));
+            } catch (NumberFormatException ex) {
+                throw new IOException("Pes no vàlid a " + file + ": " + NAMES[i], ex);
+            }
+        }
+        return new HeuristicWeights(pesos);
+    }
+
+    /**
+     * Desa els pesos en format de propietats.
+     * @param file fitxer de destí (se sobreescriu)
+     * @param comentari capçalera del fitxer (o null)
+     * @throws IOException si falla l'escriptura
+     */
+    public void save(Path file, String comentari) throws IOException {
+        Properties p = new Properties();
+        for (int i = 0; i < NAMES.length; i++) {
+            p.setProperty(NAMES[i], Double.toString(pesos[i]));
+        }
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            p.store(out, comentari);
+        }
+    }
+
+    /**
+     * Combina els termes de l'heurística.
+     * @param dJugador distància mínima del jugador
+     * @param dOponent distància mínima de l'oponent
+     * @param connectivitat parelles de pedres pròpies veïnes
+     * @param bloc parelles de pedres pròpies i contràries veïnes
+     * @return valor de l'heurística
+     */
+    int combine(int dJugador, int dOponent, int connectivitat, int bloc) {
+        if (unitaris) {
+            return (dOponent - dJugador) + connectivitat + bloc;
+        }
+        return (int) Math.round(pesos[0] * dOponent - pesos[1] * dJugador
+                + pesos[2] * connectivitat + pesos[3] * bloc);
+    }
+
+    /**
+     * @return còpia dels pesos, en l'ordre de {@link #NAMES}
+     */
+    public double[] toArray() {
+        return pesos.clone();
+    }
+
+    public double get(int i) {
+        return pesos[i];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof HeuristicWeights && Arrays.equals(pesos, ((HeuristicWeights) o).pesos);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(pesos);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < NAMES.length; i++) {
+            sb.append(i == 0 ? "" : ", ").append(NAMES[i]).append('=').append(String.format("%.3f", pesos[i]));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,33 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Esdeveniment JFR emès per cada iteració completada de l'aprofundiment
+ * iteratiu. La durada de l'esdeveniment és la de la iteració.
+ */
+@Name("edu.upc.epsevg.prop.hex.IterationCompleted")
+@Label("Iteration Completed")
+@Category({"Hex", "Search"})
+@Description("Iteració completada de l'aprofundiment iteratiu")
+public class IterationCompletedEvent extends Event {
+
+    @Label("Player")
+    String player;
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Best Move")
+    String bestMove;
+
+    @Label("Score")
+    int score;
+}
@@ -0,0 +1,27 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Esdeveniment JFR emès per cada moviment cercat per un jugador. La durada
+ * de l'esdeveniment és el temps total de la cerca.
+ */
+@Name("edu.upc.epsevg.prop.hex.MoveSearch")
+@Label("Move Search")
+@Category({"Hex", "Search"})
+@Description("Cerca d'un moviment complet d'un jugador")
+public class MoveSearchEvent extends Event {
+
+    @Label("Player")
+    String player;
+
+    @Label("Depth Reached")
+    int depth;
+
+    @Label("Nodes")
+    long nodes;
+}
@@ -0,0 +1,141 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultat d'una anàlisi de diverses variants principals
+ * ({@link HEXTEAM#analyse}): per a cada iteració completada de
+ * l'aprofundiment iteratiu, les millors jugades de l'arrel ordenades de
+ * millor a pitjor, amb el seu valor exacte i la variant principal.
+ */
+public class MultiPvAnalysis {
+
+    private final int lines;
+    private final List<Iteration> iterations = new ArrayList<>();
+
+    MultiPvAnalysis(int lines) {
+        this.lines = lines;
+    }
+
+    void add(Iteration it) {
+        iterations.add(it);
+    }
+
+    /**
+     * @return nombre de variants demanades (pot haver-n'hi menys si no hi ha
+     *         prou jugades legals)
+     */
+    public int getRequestedLines() {
+        return lines;
+    }
+
+    public List<Iteration> getIterations() {
+        return Collections.unmodifiableList(iterations);
+    }
+
+    /**
+     * @return la darrera iteració completada, o null si no n'hi ha cap
+     */
+    public Iteration getLast() {
+        return iterations.isEmpty() ? null : iterations.get(iterations.size() - 1);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Iteration it : iterations) {
+            sb.append(it).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Variants d'una iteració.
+     */
+    public static class Iteration {
+
+        private final int depth;
+        private final long nodes;
+        private final List<Line> lines;
+
+        Iteration(int depth, long nodes, List<Line> lines) {
+            this.depth = depth;
+            this.nodes = nodes;
+            this.lines = lines;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * @return nodes acumulats del moviment en acabar la iteració
+         */
+        public long getNodes() {
+            return nodes;
+        }
+
+        /**
+         * @return variants, de millor a pitjor
+         */
+        public List<Line> getLines() {
+            return Collections.unmodifiableList(lines);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("depth " + depth + ", nodes " + nodes);
+            for (int i = 0; i < lines.size(); i++) {
+                sb.append("\n  ").append(i + 1).append(": ").append(lines.get(i));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Una jugada de l'arrel amb el seu valor i la variant principal.
+     */
+    public static class Line {
+
+        private final Point move;
+        private final int score;
+        private final List<Point> pv;
+
+        Line(Point move, int score, List<Point> pv) {
+            this.move = move;
+            this.score = score;
+            this.pv = pv;
+        }
+
+        public Point getMove() {
+            return move;
+        }
+
+        /**
+         * @return valor de la jugada des del punt de vista del jugador que mou
+         */
+        public int getScore() {
+            return score;
+        }
+
+        /**
+         * @return variant principal, començant per {@link #getMove()}; la resta
+         *         surt de les millors jugades de la taula de transposició
+         */
+        public List<Point> getPv() {
+            return Collections.unmodifiableList(pv);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("score " + score + " pv");
+            for (Point p : pv) {
+                sb.append(" (").append(p.x).append(',').append(p.y).append(')');
+            }
+            return sb.toString();
+        }
+    }
+}
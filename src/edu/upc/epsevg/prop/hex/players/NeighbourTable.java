@@ -0,0 +1,178 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import java.util.Arrays;
+
+/**
+ * Taula de veïns precalculada per a una mida de tauler, compartida per tots
+ * els jugadors i heurístiques (una per mida, com les taules de {@link Zobrist}).
+ *
+ * Els nodes són les n*n caselles ({@code x * n + y}) més quatre nodes
+ * virtuals, un per costat: {@link #start(int)} i {@link #end(int)} de cada
+ * color. Els veïns de tots els nodes són en un sol {@code int[]}; els del
+ * node i ocupen les posicions {@code offset(i)} fins a {@code neighboursEnd(i) - 1}.
+ * Per a una casella, primer hi ha les caselles veïnes (fins a
+ * {@code cellsEnd(i)}) i després els nodes virtuals dels costats que toca;
+ * per a un node virtual, les caselles del seu costat. Recórrer-la no crea
+ * cap objecte, a diferència de {@code HexGameStatus.getNeigh}.
+ */
+public final class NeighbourTable {
+
+    private static final int MIDA_MAXIMA = 32;
+    private static final NeighbourTable[] TAULES = new NeighbourTable[MIDA_MAXIMA + 1];
+    private static final int[] DX = {-1, 1, 0, 1, 0, -1};
+    private static final int[] DY = {0, 0, -1, -1, 1, 1};
+
+    private final int n;
+    private final int caselles;
+    final int[] inici;     // inici dels veïns de cada node (longitud nodes + 1)
+    final int[] finsCaselles; // final dels veïns que són caselles
+    final int[] veins;
+
+    /**
+     * @param n mida del tauler
+     * @return la taula de veïns (compartida) per a aquesta mida
+     */
+    public static NeighbourTable of(int n) {
+        if (n < 1 || n > MIDA_MAXIMA) {
+            throw new IllegalArgumentException("Mida de tauler no suportada: " + n);
+        }
+        synchronized (TAULES) {
+            if (TAULES[n] == null) {
+                TAULES[n] = new NeighbourTable(n);
+            }
+            return TAULES[n];
+        }
+    }
+
+    private NeighbourTable(int n) {
+        this.n = n;
+        this.caselles = n * n;
+        int nodes = caselles + 4;
+        inici = new int[nodes + 1];
+        finsCaselles = new int[nodes];
+        int[] tmp = new int[caselles * 8 + 4 * n];
+        int k = 0;
+        for (int x = 0; x < n; x++) {
+            for (int y = 0; y < n; y++) {
+                int c = x * n + y;
+                inici[c] = k;
+                for (int d = 0; d < 6; d++) {
+                    int vx = x + DX[d];
+                    int vy = y + DY[d];
+                    if (vx >= 0 && vy >= 0 && vx < n && vy < n) {
+                        tmp[k++] = vx * n + vy;
+                    }
+                }
+                finsCaselles[c] = k;
+                if (x == 0) {
+                    tmp[k++] = start(1);
+                }
+                if (x == n - 1) {
+                    tmp[k++] = end(1);
+                }
+                if (y == 0) {
+                    tmp[k++] = start(-1);
+                }
+                if (y == n - 1) {
+                    tmp[k++] = end(-1);
+                }
+            }
+        }
+        for (int v = caselles; v < nodes; v++) {
+            inici[v] = k;
+            boolean p1 = v == start(1) || v == end(1);
+            int vora = v == start(1) || v == start(-1) ? 0 : n - 1;
+            for (int i = 0; i < n; i++) {
+                tmp[k++] = p1 ? vora * n + i : i * n + vora;
+            }
+            finsCaselles[v] = k;
+        }
+        inici[nodes] = k;
+        veins = Arrays.copyOf(tmp, k);
+    }
+
+    public int getSize() {
+        return n;
+    }
+
+    /**
+     * @return nombre total de nodes (caselles més els quatre virtuals)
+     */
+    public int nodes() {
+        return caselles + 4;
+    }
+
+    /**
+     * @param color 1 (PLAYER1, costats x) o -1 (PLAYER2, costats y)
+     * @return node virtual del costat inicial (x = 0 o y = 0)
+     */
+    public int start(int color) {
+        return caselles + (color == 1 ? 0 : 2);
+    }
+
+    /**
+     * @param color 1 (PLAYER1, costats x) o -1 (PLAYER2, costats y)
+     * @return node virtual del costat final (x = n-1 o y = n-1)
+     */
+    public int end(int color) {
+        return caselles + (color == 1 ? 1 : 3);
+    }
+
+    /**
+     * @return primera posició dels veïns del node a {@link #neighbours()}
+     */
+    public int offset(int node) {
+        return inici[node];
+    }
+
+    /**
+     * @return posició següent a l'últim veí que és una casella
+     */
+    public int cellsEnd(int node) {
+        return finsCaselles[node];
+    }
+
+    /**
+     * @return posició següent a l'últim veí (inclosos els nodes virtuals)
+     */
+    public int neighboursEnd(int node) {
+        return inici[node + 1];
+    }
+
+    /**
+     * @return vector de veïns de tots els nodes (no s'ha de modificar)
+     */
+    public int[] neighbours() {
+        return veins;
+    }
+
+    /**
+     * Compta, en una sola passada, les parelles de caselles veïnes amb
+     * pedres d'un color: amb pedres del mateix color (connectivitat) i amb
+     * pedres de l'altre valor donat (blocatge). Cada parella compta dues
+     * vegades a la connectivitat (una per extrem) i una al blocatge.
+     * @param tauler caselles ({@code x * n + y})
+     * @param color valor de les pedres a analitzar
+     * @param altre valor de les pedres contràries
+     * @param sortida {@code sortida[0]} connectivitat, {@code sortida[1]} blocatge
+     */
+    public void countPairs(byte[] tauler, int color, int altre, int[] sortida) {
+        int propies = 0;
+        int contraries = 0;
+        for (int c = 0; c < caselles; c++) {
+            if (tauler[c] != color) {
+                continue;
+            }
+            for (int i = inici[c], fi = finsCaselles[c]; i < fi; i++) {
+                int v = tauler[veins[i]];
+                if (v == color) {
+                    propies++;
+                } else if (v == altre) {
+                    contraries++;
+                }
+            }
+        }
+        sortida[0] = propies;
+        sortida[1] = contraries;
+    }
+}
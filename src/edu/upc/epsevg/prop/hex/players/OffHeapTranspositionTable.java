@@ -0,0 +1,192 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Taula de transposició fora del heap, de mida fixa, per a taules de
+ * diversos GB sense cap cost per al recol·lector.
+ *
+ * La memòria són blocs de {@link ByteBuffer} directes (un sol buffer no pot
+ * passar de 2 GB) de mida múltiple de 2 MB, perquè el sistema els pugui
+ * servir amb pàgines grans transparents. Cada entrada ocupa 16 bytes:
+ * {@code clau ^ dades} i {@code dades}. Una lectura només és vàlida si
+ * {@code primer ^ segon == clau}, de manera que diversos fils hi poden
+ * escriure sense bloquejos: una entrada a mig escriure per un altre fil
+ * simplement no es reconeix.
+ *
+ * {@link #clear()} no esborra la memòria: canvia de generació (6 bits
+ * reservats de les dades) i les entrades d'altres generacions deixen de ser
+ * vàlides. Només s'esborra de debò quan es dona la volta al comptador.
+ *
+ * La memòria directa no compta per al heap sinó per al límit
+ * {@code -XX:MaxDirectMemorySize} (per defecte, la mida màxima del heap), i
+ * el recol·lector només l'allibera quan recull els buffers: qui creï taules
+ * grans les ha de tancar amb {@link #close()} quan ja no les necessiti.
+ */
+public class OffHeapTranspositionTable implements TranspositionTable, AutoCloseable {
+
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final int MIDA_ENTRADA = 16;
+    private static final long PAGINA_GRAN = 2L << 20;    // 2 MB
+    private static final int MIDA_BLOC = 1 << 30;        // 1 GB per buffer
+    private static final int ENTRADES_BLOC = MIDA_BLOC / MIDA_ENTRADA;
+    private static final int GENERACIONS = 64;
+
+    private static final Method ALLIBERA = alliberador();
+
+    private final ByteBuffer[] blocs;
+    private final long mascara;
+    private int generacio = 1;
+
+    /**
+     * @param bytes mida màxima de la taula; s'arrodoneix a la potència de 2
+     *        d'entrades immediatament inferior (mínim 2 MB)
+     * @param preTouch si s'escriu cada pàgina en crear-la, perquè la cerca
+     *        no pagui les fallades de pàgina
+     */
+    public OffHeapTranspositionTable(long bytes, boolean preTouch) {
+        long entrades = Long.highestOneBit(Math.max(bytes, PAGINA_GRAN) / MIDA_ENTRADA);
+        mascara = entrades - 1;
+        int nombreBlocs = (int) Math.max(1, entrades / ENTRADES_BLOC);
+        int midaBloc = (int) Math.min(entrades * MIDA_ENTRADA, MIDA_BLOC);
+        blocs = new ByteBuffer[nombreBlocs];
+        for (int i = 0; i < nombreBlocs; i++) {
+            blocs[i] = ByteBuffer.allocateDirect(midaBloc).order(ByteOrder.nativeOrder());
+            if (preTouch) {
+                for (int p = 0; p < midaBloc; p += 4096) {
+                    blocs[i].put(p, (byte) 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Taula de la mida donada, sense escriure-hi per endavant.
+     * @param bytes mida màxima de la taula
+     */
+    public OffHeapTranspositionTable(long bytes) {
+        this(bytes, false);
+    }
+
+    /**
+     * Interpreta mides com {@code 512m} o {@code 2g}.
+     * @param text mida amb sufix opcional k, m o g
+     * @return bytes
+     */
+    public static long parseSize(String text) {
+        String t = text.trim().toLowerCase();
+        long multiplicador = 1;
+        char sufix = t.charAt(t.length() - 1);
+        if (sufix == 'k' || sufix == 'm' || sufix == 'g') {
+            multiplicador = sufix == 'k' ? 1L << 10 : sufix == 'm' ? 1L << 20 : 1L << 30;
+            t = t.substring(0, t.length() - 1);
+        }
+        return Long.parseLong(t) * multiplicador;
+    }
+
+    /**
+     * @return nombre d'entrades de la taula
+     */
+    public long capacity() {
+        return mascara + 1;
+    }
+
+    @Override
+    public long probe(long clau) {
+        long i = index(clau);
+        ByteBuffer bloc = blocs[(int) (i / ENTRADES_BLOC)];
+        int pos = (int) (i % ENTRADES_BLOC) * MIDA_ENTRADA;
+        long xorClau = (long) LONG.getOpaque(bloc, pos);
+        long dades = (long) LONG.getOpaque(bloc, pos + 8);
+        if ((xorClau ^ dades) != clau || (dades & 0x3F) != generacio) {
+            return 0;
+        }
+        return dades & ~0x3FL;
+    }
+
+    @Override
+    public void store(long clau, long dades) {
+        long i = index(clau);
+        ByteBuffer bloc = blocs[(int) (i / ENTRADES_BLOC)];
+        int pos = (int) (i % ENTRADES_BLOC) * MIDA_ENTRADA;
+        long marcades = (dades & ~0x3FL) | generacio;
+        LONG.setOpaque(bloc, pos, clau ^ marcades);
+        LONG.setOpaque(bloc, pos + 8, marcades);
+    }
+
+    @Override
+    public void clear() {
+        generacio++;
+        if (generacio == GENERACIONS) {
+            // S'ha donat la volta: les entrades antigues tornarien a semblar vàlides
+            for (ByteBuffer bloc : blocs) {
+                for (int p = 0; p < bloc.capacity(); p += 8) {
+                    LONG.setOpaque(bloc, p, 0L);
+                }
+            }
+            generacio = 1;
+        }
+    }
+
+    @Override
+    public void forEach(EntryVisitor visitor) {
+        for (int b = 0; b < blocs.length; b++) {
+            ByteBuffer bloc = blocs[b];
+            for (int pos = 0; pos < bloc.capacity(); pos += MIDA_ENTRADA) {
+                long xorClau = (long) LONG.getOpaque(bloc, pos);
+                long dades = (long) LONG.getOpaque(bloc, pos + 8);
+                long clau = xorClau ^ dades;
+                // Una entrada a mig escriure dona una clau que no correspon a la casella
+                if ((dades & 0x3F) == generacio && index(clau) == (long) b * ENTRADES_BLOC + pos / MIDA_ENTRADA) {
+                    visitor.visit(clau, dades & ~0x3FL);
+                }
+            }
+        }
+    }
+
+    /**
+     * Allibera la memòria de la taula sense esperar el recol·lector. Després
+     * la taula no es pot tornar a fer servir. No s'ha de cridar mentre una
+     * cerca hi accedeix.
+     */
+    @Override
+    public void close() {
+        for (int i = 0; i < blocs.length; i++) {
+            if (blocs[i] != null && ALLIBERA != null) {
+                try {
+                    ALLIBERA.invoke(unsafe(), blocs[i]);
+                } catch (ReflectiveOperationException ex) {
+                    // Sense accés al netejador, la memòria s'allibera amb el buffer
+                }
+            }
+            blocs[i] = null;
+        }
+    }
+
+    /**
+     * {@code sun.misc.Unsafe.invokeCleaner}, l'única manera d'alliberar un
+     * buffer directe a l'instant (null si aquesta JVM no el té).
+     */
+    private static Method alliberador() {
+        try {
+            return Class.forName("sun.misc.Unsafe").getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
+    private static Object unsafe() throws ReflectiveOperationException {
+        Field f = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+        f.setAccessible(true);
+        return f.get(null);
+    }
+
+    private long index(long clau) {
+        return (clau ^ (clau >>> 32)) & mascara;
+    }
+}
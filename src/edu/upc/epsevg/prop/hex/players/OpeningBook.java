@@ -0,0 +1,163 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import java.awt.Point;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Llibre d'obertures de només lectura, projectat a memòria.
+ *
+ * El fitxer té una capçalera i una llista de registres de mida fixa ordenats
+ * per clau de Zobrist canònica ({@link Zobrist}), que es cerca per cerca
+ * binària directament sobre el {@link MappedByteBuffer}:
+ * <pre>
+ *   capçalera: int MAGIC, int mida del tauler, int nombre de registres, int reservat
+ *   registre:  long clau, short casella (x * mida + y), short profunditat, int puntuació
+ * </pre>
+ * Les jugades es desen en l'orientació de la clau canònica i es tornen a
+ * rotar en consultar-les si cal.
+ */
+public class OpeningBook {
+
+    static final int MAGIC = 0x48455842; // "HEXB"
+    static final int MIDA_CAPCALERA = 16;
+    static final int MIDA_REGISTRE = 16;
+
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final int count;
+
+    private OpeningBook(MappedByteBuffer buffer) throws IOException {
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("No és un llibre d'obertures");
+        }
+        this.buffer = buffer;
+        this.size = buffer.getInt(4);
+        this.count = buffer.getInt(8);
+    }
+
+    /**
+     * Obre un llibre d'obertures.
+     * @param file fitxer generat per {@link edu.upc.epsevg.prop.hex.OpeningBookBuilder}
+     * @return el llibre projectat a memòria
+     * @throws IOException si el fitxer no existeix o no és vàlid
+     */
+    public static OpeningBook open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new OpeningBook(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Busca la posició al llibre.
+     * @param joc estat actual
+     * @return la jugada del llibre, o null si la posició no hi és
+     */
+    public Point lookup(HexGameStatus joc) {
+        if (joc.getSize() != size) {
+            return null;
+        }
+        long clau = Zobrist.clau(joc);
+        long clauRotada = Zobrist.clauRotada(joc);
+        boolean rotada = Long.compareUnsigned(clauRotada, clau) < 0;
+        int pos = cerca(rotada ? clauRotada : clau);
+        if (pos < 0) {
+            return null;
+        }
+        int casella = buffer.getShort(pos + 8);
+        int x = casella / size;
+        int y = casella % size;
+        Point p = rotada ? new Point(size - 1 - x, size - 1 - y) : new Point(x, y);
+        return joc.getPos(p) == 0 ? p : null;
+    }
+
+    /**
+     * Cerca binària sobre els registres ordenats per clau (sense signe).
+     * @return desplaçament del registre dins el buffer, o -1
+     */
+    private int cerca(long clau) {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            int mig = (lo + hi) >>> 1;
+            int pos = MIDA_CAPCALERA + mig * MIDA_REGISTRE;
+            int cmp = Long.compareUnsigned(buffer.getLong(pos), clau);
+            if (cmp < 0) {
+                lo = mig + 1;
+            } else if (cmp > 0) {
+                hi = mig - 1;
+            } else {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Escriu un llibre nou.
+     * @param file fitxer de destí (se sobreescriu)
+     * @param size mida del tauler
+     * @param entrades entrades, ja ordenades per clau sense signe i sense repetits
+     * @throws IOException si falla l'escriptura
+     */
+    public static void write(Path file, int size, List<Entry> entrades) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(MIDA_CAPCALERA + entrades.size() * MIDA_REGISTRE);
+        buf.putInt(MAGIC).putInt(size).putInt(entrades.size()).putInt(0);
+        for (Entry e : entrades) {
+            buf.putLong(e.clau).putShort((short) e.casella).putShort((short) e.profunditat).putInt(e.puntuacio);
+        }
+        buf.flip();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+        }
+    }
+
+    /**
+     * Entrada del llibre, en l'orientació canònica.
+     */
+    public static class Entry {
+
+        final long clau;
+        final int casella;
+        final int profunditat;
+        final int puntuacio;
+
+        /**
+         * @param clau clau de Zobrist canònica de la posició
+         * @param casella jugada ({@code x * n + y}) en l'orientació canònica
+         * @param profunditat profunditat de la cerca que l'ha triada
+         * @param puntuacio valor de la jugada
+         */
+        public Entry(long clau, int casella, int profunditat, int puntuacio) {
+            this.clau = clau;
+            this.casella = casella;
+            this.profunditat = profunditat;
+            this.puntuacio = puntuacio;
+        }
+
+        public long getKey() {
+            return clau;
+        }
+
+        public int getCell() {
+            return casella;
+        }
+    }
+}
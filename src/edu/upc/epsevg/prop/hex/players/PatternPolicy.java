@@ -0,0 +1,147 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Política de jugades basada en patrons locals, entrenada fora de línia
+ * ({@link edu.upc.epsevg.prop.hex.PatternTrainer}).
+ *
+ * El patró d'una casella buida és l'estat dels seus 6 veïns vistos pel
+ * jugador que mou: buit, pedra pròpia, pedra de l'oponent, fora del tauler
+ * per un costat propi o fora del tauler per un costat de l'oponent. Amb 5
+ * estats per veí hi ha 5^6 patrons, i el pes de cadascun es guarda en un
+ * {@code float[]} indexat pel codi del patró.
+ */
+public class PatternPolicy {
+
+    static final int ESTATS = 5;
+    static final int PATRONS = 15625; // 5^6
+    private static final int MAGIC = 0x48455850; // "HEXP"
+    private static final int[] DX = {-1, 1, 0, 1, 0, -1};
+    private static final int[] DY = {0, 0, -1, -1, 1, 1};
+
+    final float[] pesos;
+
+    /**
+     * Crea una política uniforme (tots els pesos a zero).
+     */
+    public PatternPolicy() {
+        this.pesos = new float[PATRONS];
+    }
+
+    /**
+     * @return pesos de la política, indexats pel codi del patró
+     *         ({@link #patro}); l'entrenament els modifica directament
+     */
+    public float[] getWeights() {
+        return pesos;
+    }
+
+    /**
+     * Carrega una política desada amb {@link #save(Path)}.
+     * @param file fitxer de pesos
+     * @return la política
+     * @throws IOException si el fitxer no existeix o no és vàlid
+     */
+    public static PatternPolicy load(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate((int) ch.size());
+            while (buf.hasRemaining() && ch.read(buf) >= 0) {
+            }
+            buf.flip();
+            if (buf.remaining() < 8 || buf.getInt() != MAGIC || buf.getInt() != PATRONS) {
+                throw new IOException("No és un fitxer de patrons: " + file);
+            }
+            PatternPolicy p = new PatternPolicy();
+            buf.asFloatBuffer().get(p.pesos);
+            return p;
+        }
+    }
+
+    /**
+     * Desa els pesos a disc.
+     * @param file fitxer de destí (se sobreescriu)
+     * @throws IOException si falla l'escriptura
+     */
+    public void save(Path file) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8 + 4 * PATRONS);
+        buf.putInt(MAGIC).putInt(PATRONS);
+        buf.asFloatBuffer().put(pesos);
+        buf.position(buf.capacity());
+        buf.flip();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+        }
+    }
+
+    /**
+     * Copia el tauler a un vector indexat per {@code x * n + y}.
+     */
+    static byte[] tauler(HexGameStatus joc) {
+        int n = joc.getSize();
+        byte[] t = new byte[n * n];
+        for (int x = 0; x < n; x++) {
+            for (int y = 0; y < n; y++) {
+                t[x * n + y] = (byte) joc.getPos(x, y);
+            }
+        }
+        return t;
+    }
+
+    /**
+     * Puntua totes les caselles en una sola passada pel tauler.
+     * @param tauler caselles ({@code x * n + y}) amb valors 1, -1 o 0
+     * @param n mida del tauler
+     * @param color color del jugador que mou (1 o -1)
+     * @param sortida puntuació de cada casella; les ocupades reben -infinit
+     */
+    public void score(byte[] tauler, int n, int color, float[] sortida) {
+        for (int c = 0; c < tauler.length; c++) {
+            sortida[c] = tauler[c] == 0 ? pesos[patro(tauler, n, c, color)] : Float.NEGATIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Puntua totes les caselles per al jugador que mou.
+     * @return puntuació per casella ({@code x * n + y})
+     */
+    public float[] score(HexGameStatus joc) {
+        byte[] t = tauler(joc);
+        float[] res = new float[t.length];
+        score(t, joc.getSize(), joc.getCurrentPlayerColor(), res);
+        return res;
+    }
+
+    /**
+     * Codi del patró de la casella c per al jugador de color donat.
+     */
+    public static int patro(byte[] tauler, int n, int c, int color) {
+        int x = c / n;
+        int y = c % n;
+        int codi = 0;
+        for (int d = 5; d >= 0; d--) {
+            int vx = x + DX[d];
+            int vy = y + DY[d];
+            int estat;
+            if (vx < 0 || vx >= n) {
+                // Costats x: propis de PLAYER1 (color 1)
+                estat = color == 1 ? 3 : 4;
+            } else if (vy < 0 || vy >= n) {
+                estat = color == 1 ? 4 : 3;
+            } else {
+                int v = tauler[vx * n + vy];
+                estat = v == 0 ? 0 : (v == color ? 1 : 2);
+            }
+            codi = codi * ESTATS + estat;
+        }
+        return codi;
+    }
+}
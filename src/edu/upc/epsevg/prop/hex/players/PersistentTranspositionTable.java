@@ -0,0 +1,197 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Instantània de només lectura de la part profunda d'una taula de
+ * transposició, projectada a memòria, per reaprofitar la feina de partides
+ * (o processos) anteriors.
+ *
+ * Com el {@link OpeningBook}, el fitxer és una capçalera i una llista de
+ * registres de mida fixa ordenats per clau canònica, que es cerca per cerca
+ * binària sobre el {@link MappedByteBuffer}:
+ * <pre>
+ *   capçalera: int MAGIC, int mida del tauler, int nombre de registres, int color
+ *   registre:  long clau, long dades (empaquetades com a {@link TranspositionTable})
+ * </pre>
+ * Els valors són des del punt de vista del jugador que els ha cercat, per
+ * això la taula només serveix per a jugadors del mateix color. Com a molt
+ * es desen {@value #MAX_REGISTRES} registres (32 MB), els més profunds.
+ */
+public class PersistentTranspositionTable {
+
+    static final int MAGIC = 0x48455854; // "HEXT"
+    static final int MIDA_CAPCALERA = 16;
+    static final int MIDA_REGISTRE = 16;
+    static final int MAX_REGISTRES = 1 << 21;
+    private static final int MIDA_ESCRIPTURA = 1 << 20; // bytes que s'escriuen de cop
+
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final int count;
+    private final int color;
+
+    private PersistentTranspositionTable(MappedByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < MIDA_CAPCALERA || buffer.getInt(0) != MAGIC) {
+            throw new IOException("No és una taula de transposició");
+        }
+        this.buffer = buffer;
+        this.size = buffer.getInt(4);
+        this.count = buffer.getInt(8);
+        this.color = buffer.getInt(12);
+        if (buffer.capacity() < MIDA_CAPCALERA + (long) count * MIDA_REGISTRE) {
+            throw new IOException("Taula de transposició truncada");
+        }
+    }
+
+    /**
+     * Obre una taula desada.
+     * @param file fitxer generat per {@link #write}
+     * @return la taula projectada a memòria
+     * @throws IOException si el fitxer no existeix o no és vàlid
+     */
+    public static PersistentTranspositionTable open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new PersistentTranspositionTable(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return color (1 o -1) del jugador des del punt de vista del qual són els valors
+     */
+    public int getColor() {
+        return color;
+    }
+
+    /**
+     * @param clau clau de Zobrist canònica de la posició
+     * @return dades empaquetades, o 0 si la posició no hi és
+     */
+    public long probe(long clau) {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            int mig = (lo + hi) >>> 1;
+            int pos = MIDA_CAPCALERA + mig * MIDA_REGISTRE;
+            int cmp = Long.compareUnsigned(buffer.getLong(pos), clau);
+            if (cmp < 0) {
+                lo = mig + 1;
+            } else if (cmp > 0) {
+                hi = mig - 1;
+            } else {
+                return buffer.getLong(pos + 8);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Recorre totes les entrades, en ordre de clau.
+     * @param visitor rep cada clau amb les seves dades
+     */
+    public void forEach(TranspositionTable.EntryVisitor visitor) {
+        for (int i = 0; i < count; i++) {
+            int pos = MIDA_CAPCALERA + i * MIDA_REGISTRE;
+            visitor.visit(buffer.getLong(pos), buffer.getLong(pos + 8));
+        }
+    }
+
+    /**
+     * Escriu una taula nova amb, com a molt, les {@value #MAX_REGISTRES}
+     * entrades més profundes. S'escriu en un fitxer temporal i es renomena al
+     * final, de manera que qui tingui la taula anterior projectada (fins i tot
+     * el mateix jugador) la pot continuar llegint. Substituir un fitxer
+     * projectat només funciona en sistemes POSIX: a Windows el renomenament
+     * falla mentre algú el tingui obert.
+     * @param file fitxer de destí (se substitueix)
+     * @param size mida del tauler
+     * @param color color del jugador que ha cercat les entrades
+     * @param entrades clau canònica i dades de cada entrada
+     * @return nombre de registres desats
+     * @throws IOException si falla l'escriptura
+     */
+    public static int write(Path file, int size, int color, Map<Long, Long> entrades) throws IOException {
+        long[] claus = mesProfundes(entrades, MAX_REGISTRES);
+        for (int k = 0; k < claus.length; k++) {
+            // Ordre sense signe: es gira el bit de signe, s'ordena amb signe i es desfà
+            claus[k] ^= Long.MIN_VALUE;
+        }
+        Arrays.sort(claus);
+        Path absolut = file.toAbsolutePath();
+        Path temporal = Files.createTempFile(absolut.getParent(), absolut.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(temporal, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buf = ByteBuffer.allocate(MIDA_ESCRIPTURA);
+                buf.putInt(MAGIC).putInt(size).putInt(claus.length).putInt(color);
+                for (long c : claus) {
+                    if (buf.remaining() < MIDA_REGISTRE) {
+                        escriu(ch, buf);
+                    }
+                    long clau = c ^ Long.MIN_VALUE;
+                    buf.putLong(clau).putLong(entrades.get(clau));
+                }
+                escriu(ch, buf);
+            }
+            Files.move(temporal, absolut, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+        return claus.length;
+    }
+
+    /**
+     * Tria les claus de les {@code max} entrades més profundes; entre les de
+     * la profunditat de tall, en qualsevol ordre.
+     * @param entrades clau i dades empaquetades de cada entrada
+     * @param max nombre màxim de claus
+     * @return claus triades
+     */
+    static long[] mesProfundes(Map<Long, Long> entrades, int max) {
+        // Quantes entrades hi ha de cada profunditat, per trobar la de tall
+        int[] perProfunditat = new int[256];
+        for (long dades : entrades.values()) {
+            perProfunditat[TranspositionTable.profunditat(dades)]++;
+        }
+        int tall = 255;
+        int mesProfundes = 0; // entrades de profunditat més gran que la de tall
+        while (tall > 0 && mesProfundes + perProfunditat[tall] <= max) {
+            mesProfundes += perProfunditat[tall--];
+        }
+        int deTall = Math.min(max - mesProfundes, perProfunditat[tall]);
+        long[] claus = new long[mesProfundes + deTall];
+        int k = 0;
+        for (Map.Entry<Long, Long> e : entrades.entrySet()) {
+            int p = TranspositionTable.profunditat(e.getValue());
+            if (p > tall || (p == tall && deTall-- > 0)) {
+                claus[k++] = e.getKey();
+            }
+        }
+        return claus;
+    }
+
+    private static void escriu(FileChannel ch, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+        buf.clear();
+    }
+}
@@ -14,30 +14,85 @@ import java.util.List;
  * Implementació de Minimax per al joc Hex amb poda alfa-beta.
  * @author 
  */
-public class PlayerMinimax implements IPlayer, IAuto {
+public class PlayerMinimax implements IPlayer, IAuto, WarmUp {
 
     private int maxDepth;                 // profunditat màxima
     private PlayerType playerType;       // tipus de jugador
     private long nodesExplored;          // nodes explorats
     private DijkstraHeuristic heuristic; // heurística
+    private OpeningBook openingBook;     // llibre d'obertures (opcional)
+    private final ThreatDetector amenaces = new ThreatDetector(); // victòries immediates
+    private final TacticalMoves tactiques = new TacticalMoves();  // jugades de l'extensió tàctica
+    private int nodesTactics;            // nodes de l'extensió tàctica en curs
+    private int pressupostTactic = TacticalMoves.PRESSUPOST_PER_FULLA; // nodes màxims de l'extensió per fulla
 
     public PlayerMinimax(int maxDepth, PlayerType playerType) {
+        this(maxDepth, playerType, HeuristicWeights.DEFAULT);
+    }
+
+    /**
+     * @param maxDepth profunditat màxima
+     * @param playerType tipus de jugador
+     * @param pesos pesos de {@link DijkstraHeuristic}
+     */
+    public PlayerMinimax(int maxDepth, PlayerType playerType, HeuristicWeights pesos) {
         this.maxDepth = maxDepth;
         this.playerType = playerType;
-        this.heuristic = new DijkstraHeuristic();
+        this.heuristic = new DijkstraHeuristic(pesos);
+    }
+
+    /**
+     * Escalfa el JIT amb una instància a part limitada a profunditat 2, ja
+     * que aquest jugador no té límit de temps.
+     */
+    @Override
+    public long warmUp(int size, long maxMillis) {
+        PlayerMinimax escalfament = new PlayerMinimax(Math.min(maxDepth, 2), playerType, heuristic.getWeights());
+        escalfament.setTacticalBudget(pressupostTactic);
+        return WarmUpRunner.run(size, playerType, maxMillis, joc -> escalfament.move(joc));
+    }
+
+    /**
+     * Nombre màxim de nodes que pot afegir l'extensió tàctica a cada fulla.
+     * @param pressupostTactic nodes per fulla (0 per desactivar l'extensió)
+     */
+    public void setTacticalBudget(int pressupostTactic) {
+        this.pressupostTactic = pressupostTactic;
+    }
+
+    /**
+     * Fa servir un llibre d'obertures: si la posició hi és, es juga sense cercar.
+     * @param openingBook llibre d'obertures (null per desactivar-lo)
+     */
+    public void setOpeningBook(OpeningBook openingBook) {
+        this.openingBook = openingBook;
     }
 
     @Override
     public PlayerMove move(HexGameStatus game) {
+        if (openingBook != null) {
+            Point jugadaLlibre = openingBook.lookup(game);
+            if (jugadaLlibre != null) {
+                return new PlayerMove(jugadaLlibre, 0, 0, SearchType.MINIMAX);
+            }
+        }
         // Conservem 'move' per ser compatibles amb la interfície IPlayer
         nodesExplored = 0;
+        MoveSearchEvent event = new MoveSearchEvent();
+        event.begin();
         Point millorMoviment = cercaMillorMoviment(game);
+        if (event.shouldCommit()) {
+            event.player = getName();
+            event.depth = maxDepth;
+            event.nodes = nodesExplored;
+            event.commit();
+        }
         return new PlayerMove(millorMoviment, nodesExplored, maxDepth, SearchType.MINIMAX);
     }
 
     /**
      * Cerca el millor moviment mitjançant dos passos:
-     *  1) Bloquejar la victòria immediata de l'oponent si és possible.
+     *  1) Guanyar immediatament o bloquejar la victòria immediata de l'oponent.
      *  2) Aplicar Minimax per escollir el moviment òptim.
      */
     private Point cercaMillorMoviment(HexGameStatus joc) {
@@ -45,15 +100,11 @@ public class PlayerMinimax implements IPlayer, IAuto {
         Point millorMoviment = null;
         List<MoveNode> moviments = joc.getMoves();
 
-        // Pas 1: Bloquejar la victòria immediata de l'oponent
-        for (MoveNode moviment : moviments) {
-            HexGameStatus simulacioJoc = new HexGameStatus(joc);
-            simulacioJoc.placeStone(moviment.getPoint());
-            if (simulacioJoc.isGameOver()
-                && simulacioJoc.GetWinner() == PlayerType.opposite(playerType)) {
-                // Si l'oponent guanyaria en aquest moviment, el bloquegem
-                return moviment.getPoint();
-            }
+        // Pas 1: Guanyar o bloquejar la victòria immediata de l'oponent
+        amenaces.analyse(joc);
+        Point forcada = amenaces.forcedMove(joc.getCurrentPlayerColor());
+        if (forcada != null) {
+            return forcada;
         }
 
         // Pas 2: Cerca del millor moviment amb Minimax
@@ -102,8 +153,10 @@ public class PlayerMinimax implements IPlayer, IAuto {
         }
 
         // Si hem arribat a la profunditat límit, avaluem amb la nostra heurística
+        // estesa amb les jugades tàctiques
         if (profunditat == 0) {
-            return heuristic.avalua(joc, playerType);
+            nodesTactics = 0;
+            return quiescencia(joc, alpha, beta, esMaximitzant, 0);
         }
 
         int millorPuntuacio = esMaximitzant ? Integer.MIN_VALUE : Integer.MAX_VALUE;
@@ -133,6 +186,72 @@ public class PlayerMinimax implements IPlayer, IAuto {
         return millorPuntuacio;
     }
 
+    /**
+     * Extensió tàctica de les fulles. Primer mira si qui mou guanya a la
+     * jugada següent o no pot aturar l'oponent; si no, parteix de l'avaluació
+     * estàtica i només explora reparacions de pont i jugades sobre camins
+     * mínims crítics, o el blocatge obligat si n'hi ha un.
+     */
+    private int quiescencia(HexGameStatus joc, int alpha, int beta, boolean esMaximitzant, int ply) {
+        amenaces.analyse(joc);
+        int color = joc.getCurrentPlayerColor();
+        boolean jugaPropi = joc.getCurrentPlayer() == playerType;
+        if (amenaces.countWins(color) > 0) {
+            return jugaPropi ? Integer.MAX_VALUE - maxDepth : Integer.MIN_VALUE + maxDepth;
+        }
+        if (amenaces.countWins(-color) > 1) {
+            return jugaPropi ? Integer.MIN_VALUE + maxDepth : Integer.MAX_VALUE - maxDepth;
+        }
+
+        int n = joc.getSize();
+        int[] jugades = new int[n * n];
+        int k;
+        int millor = heuristic.avalua(joc, playerType);
+        if (amenaces.countWins(-color) == 1 && ply > 0) {
+            jugades[0] = amenaces.winCell(-color, 0);
+            k = 1;
+        } else {
+            if (ply >= TacticalMoves.MAX_PLY || nodesTactics >= pressupostTactic
+                    || (esMaximitzant ? millor >= beta : millor <= alpha)) {
+                return millor;
+            }
+            k = tactiques.generate(joc, jugades);
+        }
+
+        boolean obligat = k == 1 && ply > 0 && amenaces.countWins(-color) == 1;
+        int millorFill = esMaximitzant ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        for (int i = 0; i < k && nodesTactics < pressupostTactic; i++) {
+            nodesTactics++;
+            nodesExplored++;
+            HexGameStatus nouJoc = new HexGameStatus(joc);
+            nouJoc.placeStone(new Point(jugades[i] / n, jugades[i] % n));
+            int puntuacio;
+            if (nouJoc.isGameOver()) {
+                puntuacio = nouJoc.GetWinner() == playerType ? Integer.MAX_VALUE - maxDepth : Integer.MIN_VALUE + maxDepth;
+            } else {
+                puntuacio = quiescencia(nouJoc, alpha, beta, !esMaximitzant, ply + 1);
+            }
+            if (esMaximitzant) {
+                millorFill = Math.max(millorFill, puntuacio);
+                alpha = Math.max(alpha, millorFill);
+            } else {
+                millorFill = Math.min(millorFill, puntuacio);
+                beta = Math.min(beta, millorFill);
+            }
+            if (beta <= alpha) {
+                break;
+            }
+        }
+        if (millorFill == Integer.MIN_VALUE || millorFill == Integer.MAX_VALUE) {
+            return millor;
+        }
+        if (obligat) {
+            // No es pot plantar: el resultat és el del blocatge
+            return millorFill;
+        }
+        return esMaximitzant ? Math.max(millor, millorFill) : Math.min(millor, millorFill);
+    }
+
     @Override
     public void timeout() {
         // No s'usa en aquesta implementació
@@ -0,0 +1,13 @@
+package edu.upc.epsevg.prop.hex.players;
+
+/**
+ * Jugador que publica el progrés de la seva cerca mentre pensa, perquè la
+ * interfície el pugui mostrar sense esperar el resultat.
+ */
+public interface ProgressSource {
+
+    /**
+     * @return progrés de la cerca en curs (o de l'última, si no n'hi ha cap en curs)
+     */
+    SearchProgress getSearchProgress();
+}
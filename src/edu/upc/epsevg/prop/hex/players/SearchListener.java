@@ -0,0 +1,21 @@
+package edu.upc.epsevg.prop.hex.players;
+
+/**
+ * Observador de la cerca d'un jugador. Les crides es fan des del fil que
+ * cerca, per tant les implementacions han de ser ràpides.
+ */
+public interface SearchListener {
+
+    /**
+     * S'ha completat una iteració de l'aprofundiment iteratiu.
+     * @param stats estadístiques acumulades del moviment en curs
+     * @param iteration iteració que s'acaba de completar
+     */
+    void onIterationCompleted(SearchStats stats, SearchStats.Iteration iteration);
+
+    /**
+     * S'ha acabat la cerca d'un moviment.
+     * @param stats estadístiques finals del moviment
+     */
+    void onSearchCompleted(SearchStats stats);
+}
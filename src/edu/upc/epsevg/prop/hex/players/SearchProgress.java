@@ -0,0 +1,144 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Progrés en viu de la cerca d'un moviment, per casella de l'arrel: l'últim
+ * valor trobat i els nodes acumulats sota cada jugada.
+ *
+ * El fil que cerca hi escriu sense bloquejar-se mai (escriptures atòmiques
+ * amb {@code setRelease}) i qualsevol altre fil en pot treure una
+ * {@link Snapshot} quan vulgui. Una instantània no és consistent entre
+ * caselles: cada casella és la darrera escrita, cosa suficient per mostrar-la.
+ */
+public class SearchProgress {
+
+    private volatile AtomicIntegerArray valors = new AtomicIntegerArray(0);
+    private volatile AtomicLongArray nodes = new AtomicLongArray(0);
+    private volatile int size;
+    private volatile int depth;
+    private volatile int bestCell = -1;
+
+    /**
+     * Comença un moviment nou: esborra el progrés anterior.
+     * @param n mida del tauler
+     */
+    void reset(int n) {
+        if (n != size) {
+            valors = new AtomicIntegerArray(n * n);
+            nodes = new AtomicLongArray(n * n);
+            size = n;
+        } else {
+            for (int c = 0; c < n * n; c++) {
+                nodes.setRelease(c, 0);
+                valors.setRelease(c, 0);
+            }
+        }
+        depth = 0;
+        bestCell = -1;
+    }
+
+    /**
+     * Comença una iteració de l'aprofundiment iteratiu.
+     */
+    void beginIteration(int profunditat) {
+        depth = profunditat;
+    }
+
+    /**
+     * Registra el resultat d'una jugada de l'arrel.
+     * @param casella casella ({@code x * n + y})
+     * @param valor valor (o cota, si s'ha cercat amb finestra nul·la)
+     * @param nodesJugada nodes explorats per aquesta jugada
+     * @param millor cert si és la millor jugada de la iteració fins ara
+     */
+    void update(int casella, int valor, long nodesJugada, boolean millor) {
+        AtomicLongArray n = nodes;
+        AtomicIntegerArray v = valors;
+        if (casella >= v.length()) {
+            return;
+        }
+        v.setRelease(casella, valor);
+        n.setRelease(casella, n.getPlain(casella) + nodesJugada);
+        if (millor) {
+            bestCell = casella;
+        }
+    }
+
+    /**
+     * @return còpia del progrés actual (null si encara no ha començat cap moviment)
+     */
+    public Snapshot snapshot() {
+        int n = size;
+        if (n == 0) {
+            return null;
+        }
+        AtomicIntegerArray v = valors;
+        AtomicLongArray nd = nodes;
+        int[] copiaValors = new int[n * n];
+        long[] copiaNodes = new long[n * n];
+        for (int c = 0; c < copiaValors.length && c < v.length(); c++) {
+            copiaValors[c] = v.getAcquire(c);
+            copiaNodes[c] = nd.getAcquire(c);
+        }
+        return new Snapshot(n, depth, bestCell, copiaValors, copiaNodes);
+    }
+
+    /**
+     * Còpia immutable del progrés en un instant.
+     */
+    public static class Snapshot {
+
+        private final int size;
+        private final int depth;
+        private final int bestCell;
+        private final int[] scores;
+        private final long[] nodes;
+
+        Snapshot(int size, int depth, int bestCell, int[] scores, long[] nodes) {
+            this.size = size;
+            this.depth = depth;
+            this.bestCell = bestCell;
+            this.scores = scores;
+            this.nodes = nodes;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * @return profunditat de la iteració en curs
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * @return millor casella de l'última iteració ({@code x * n + y}), o -1
+         */
+        public int getBestCell() {
+            return bestCell;
+        }
+
+        public int getScore(int x, int y) {
+            return scores[x * size + y];
+        }
+
+        public long getNodes(int x, int y) {
+            return nodes[x * size + y];
+        }
+
+        /**
+         * @return nodes de la jugada més explorada
+         */
+        public long getMaxNodes() {
+            long max = 0;
+            for (long v : nodes) {
+                max = Math.max(max, v);
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Estadístiques d'una cerca (un moviment) d'un jugador.
+ *
+ * Els comptadors són camps de paquet perquè la cerca els incrementi sense
+ * cost addicional; la resta del codi els consulta amb els getters.
+ */
+public class SearchStats {
+
+    private final String player;
+    private final List<Iteration> iterations = new ArrayList<>();
+    private final long startNanos;
+    private long totalNanos;
+
+    long nodes;             // nodes explorats
+    long ttProbes;          // consultes a la taula de transposició
+    long ttHits;            // consultes que han trobat entrada
+    long ttCutoffs;         // consultes que han tallat la cerca
+    long evalCalls;         // crides a l'heurística
+    long evalCacheHits;     // avaluacions trobades a la memòria cau
+    long evalNanos;         // temps dins l'heurística
+    long interiorNodes;     // nodes que han generat fills
+    long childrenSearched;  // fills explorats pels nodes interiors
+    long cutoffs;           // podes alfa-beta
+    long firstMoveCutoffs;  // podes produïdes pel primer fill
+    long reductions;        // fills explorats amb profunditat reduïda (LMR)
+    long reSearches;        // cerques repetides després d'un fail-high
+
+    public SearchStats(String player) {
+        this.player = player;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Registra una iteració completada de l'IDS.
+     * @param depth profunditat de la iteració
+     * @param nodesBefore nodes acumulats en començar la iteració
+     * @param nanos durada de la iteració
+     * @param bestMove millor moviment trobat
+     * @param score valor del millor moviment
+     * @return la iteració registrada
+     */
+    Iteration addIteration(int depth, long nodesBefore, long nanos, Point bestMove, int score) {
+        Iteration it = new Iteration(depth, nodes - nodesBefore, nanos, bestMove, score);
+        iterations.add(it);
+        return it;
+    }
+
+    void finish() {
+        totalNanos = System.nanoTime() - startNanos;
+    }
+
+    public String getPlayer() {
+        return player;
+    }
+
+    public List<Iteration> getIterations() {
+        return Collections.unmodifiableList(iterations);
+    }
+
+    public int getDepthReached() {
+        return iterations.isEmpty() ? 0 : iterations.get(iterations.size() - 1).getDepth();
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getNodesPerSecond() {
+        return totalNanos > 0 ? nodes * 1_000_000_000L / totalNanos : 0;
+    }
+
+    public long getTtProbes() {
+        return ttProbes;
+    }
+
+    public long getTtHits() {
+        return ttHits;
+    }
+
+    public long getTtCutoffs() {
+        return ttCutoffs;
+    }
+
+    public double getTtHitRate() {
+        return ratio(ttHits, ttProbes);
+    }
+
+    public double getTtCutoffRate() {
+        return ratio(ttCutoffs, ttProbes);
+    }
+
+    public long getEvalCalls() {
+        return evalCalls;
+    }
+
+    public long getEvalCacheHits() {
+        return evalCacheHits;
+    }
+
+    /**
+     * @return fracció de les avaluacions resoltes per la memòria cau
+     */
+    public double getEvalCacheHitRate() {
+        return ratio(evalCacheHits, evalCacheHits + evalCalls);
+    }
+
+    public long getEvalNanos() {
+        return evalNanos;
+    }
+
+    /**
+     * @return fracció del temps total passat dins l'heurística
+     */
+    public double getEvalTimeFraction() {
+        return ratio(evalNanos, totalNanos);
+    }
+
+    /**
+     * @return nombre mitjà de fills explorats per node interior
+     */
+    public double getBranchingFactor() {
+        return ratio(childrenSearched, interiorNodes);
+    }
+
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    /**
+     * @return fracció de podes produïdes pel primer fill (qualitat de l'ordenació)
+     */
+    public double getFirstMoveCutoffRate() {
+        return ratio(firstMoveCutoffs, cutoffs);
+    }
+
+    public long getReductions() {
+        return reductions;
+    }
+
+    public long getReSearches() {
+        return reSearches;
+    }
+
+    private static double ratio(long a, long b) {
+        return b == 0 ? 0 : (double) a / b;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%s: depth %d, %d nodes, %d ms, %d nps%n",
+                player, getDepthReached(), nodes, totalNanos / 1_000_000, getNodesPerSecond()));
+        sb.append(String.format("  TT probes %d, hit %.1f%%, cutoff %.1f%%%n",
+                ttProbes, 100 * getTtHitRate(), 100 * getTtCutoffRate()));
+        sb.append(String.format("  eval calls %d, eval time %.1f%%, branching %.2f, first-move cutoffs %.1f%%%n",
+                evalCalls, 100 * getEvalTimeFraction(), getBranchingFactor(), 100 * getFirstMoveCutoffRate()));
+        sb.append(String.format("  eval cache hit %.1f%%%n", 100 * getEvalCacheHitRate()));
+        sb.append(String.format("  reductions %d, re-searches %d%n", reductions, reSearches));
+        for (Iteration it : iterations) {
+            sb.append("  ").append(it).append(String.format("%n"));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Resultat d'una iteració de l'aprofundiment iteratiu.
+     */
+    public static class Iteration {
+
+        private final int depth;
+        private final long nodes;
+        private final long nanos;
+        private final Point bestMove;
+        private final int score;
+
+        Iteration(int depth, long nodes, long nanos, Point bestMove, int score) {
+            this.depth = depth;
+            this.nodes = nodes;
+            this.nanos = nanos;
+            this.bestMove = bestMove;
+            this.score = score;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public long getNodes() {
+            return nodes;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public Point getBestMove() {
+            return bestMove;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("depth %2d: %10d nodes %8d ms  best %s score %d",
+                    depth, nodes, nanos / 1_000_000,
+                    bestMove == null ? "-" : "(" + bestMove.x + "," + bestMove.y + ")", score);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Publica per JMX les estadístiques de l'últim moviment d'un jugador
+ * (consultables amb JConsole o VisualVM).
+ *
+ * Ús: {@code jugador.addSearchListener(SearchStatsJmx.register("HEXTEAM"));}
+ */
+public class SearchStatsJmx implements SearchListener, SearchStatsJmxMBean {
+
+    private volatile SearchStats last;
+    private volatile long moves;
+
+    /**
+     * Crea i registra el bean a la plataforma.
+     * @param name nom que identifica el jugador
+     * @return el bean registrat, per afegir-lo com a observador
+     */
+    public static SearchStatsJmx register(String name) {
+        SearchStatsJmx bean = new SearchStatsJmx();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on = new ObjectName("edu.upc.epsevg.prop.hex:type=SearchStats,name=" + ObjectName.quote(name));
+            if (server.isRegistered(on)) {
+                server.unregisterMBean(on);
+            }
+            server.registerMBean(bean, on);
+        } catch (JMException e) {
+            throw new IllegalStateException("No s'ha pogut registrar el bean JMX " + name, e);
+        }
+        return bean;
+    }
+
+    @Override
+    public void onIterationCompleted(SearchStats stats, SearchStats.Iteration iteration) {
+    }
+
+    @Override
+    public void onSearchCompleted(SearchStats stats) {
+        last = stats;
+        moves++;
+    }
+
+    @Override
+    public long getMoves() {
+        return moves;
+    }
+
+    @Override
+    public int getDepthReached() {
+        SearchStats s = last;
+        return s == null ? 0 : s.getDepthReached();
+    }
+
+    @Override
+    public long getNodes() {
+        SearchStats s = last;
+        return s == null ? 0 : s.getNodes();
+    }
+
+    @Override
+    public long getNodesPerSecond() {
+        SearchStats s = last;
+        return s == null ? 0 : s.getNodesPerSecond();
+    }
+
+    @Override
+    public long getTimeMillis() {
+        SearchStats s = last;
+        return s == null ? 0 : s.getTotalNanos() / 1_000_000;
+    }
+
+    @Override
+    public double getTtHitRate() {
+        SearchStats s = last;
+        return s == null ? 0 : s.getTtHitRate();
+    }
+
+    @Override
+    public double getTtCutoffRate() {
+        SearchStats s = last;
+        return s == null ? 0 : s.getTtCutoffRate();
+    }
+
+    @Override
+    public long getEvalCalls() {
+        SearchStats s = last;
+        return s == null ? 0 : s.getEvalCalls();
+    }
+
+    @Override
+    public double getEvalCacheHitRate() {
+        SearchStats s = last;
+        return s == null ? 0 : s.getEvalCacheHitRate();
+    }
+
+    @Override
+    public double getEvalTimeFraction() {
+        SearchStats s = last;
+        return s == null ? 0 : s.getEvalTimeFraction();
+    }
+
+    @Override
+    public double getBranchingFactor() {
+        SearchStats s = last;
+        return s == null ? 0 : s.getBranchingFactor();
+    }
+
+    @Override
+    public double getFirstMoveCutoffRate() {
+        SearchStats s = last;
+        return s == null ? 0 : s.getFirstMoveCutoffRate();
+    }
+}
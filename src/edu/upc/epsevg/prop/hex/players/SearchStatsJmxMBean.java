@@ -0,0 +1,31 @@
+package edu.upc.epsevg.prop.hex.players;
+
+/**
+ * Interfície JMX de {@link SearchStatsJmx}: valors de l'últim moviment.
+ */
+public interface SearchStatsJmxMBean {
+
+    long getMoves();
+
+    int getDepthReached();
+
+    long getNodes();
+
+    long getNodesPerSecond();
+
+    long getTimeMillis();
+
+    double getTtHitRate();
+
+    double getTtCutoffRate();
+
+    long getEvalCalls();
+
+    double getEvalCacheHitRate();
+
+    double getEvalTimeFraction();
+
+    double getBranchingFactor();
+
+    double getFirstMoveCutoffRate();
+}
@@ -0,0 +1,190 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import java.util.Arrays;
+
+/**
+ * Generador de jugades tàctiques per a l'extensió de les fulles de la cerca.
+ *
+ * Només proposa dos tipus de jugades per al jugador que mou:
+ * <ul>
+ * <li>reparacions de pont: un pont propi amb una de les dues caselles
+ * d'enllaç ocupada per l'oponent i l'altra buida;</li>
+ * <li>jugades que redueixen la distància: caselles buides sobre un camí
+ * mínim d'un jugador que és a 2 pedres o menys de guanyar (per avançar si és
+ * propi o per tallar-lo si és de l'oponent).</li>
+ * </ul>
+ * Les distàncies es calculen amb un recorregut 0-1 (pedra pròpia 0, casella
+ * buida 1, pedra contrària infranquejable) des de cada costat.
+ */
+public class TacticalMoves {
+
+    /**
+     * Distància màxima a la victòria a partir de la qual es consideren les
+     * jugades del camí mínim.
+     */
+    public static final int DISTANCIA_CRITICA = 2;
+
+    /**
+     * Nodes que l'extensió tàctica pot afegir per defecte a cada fulla, tant
+     * a HEXTEAM com a PlayerMinimax (tots dos el canvien amb
+     * {@code setTacticalBudget}).
+     */
+    public static final int PRESSUPOST_PER_FULLA = 32;
+
+    /**
+     * Profunditat màxima de l'extensió tàctica, en jugades des de la fulla.
+     */
+    public static final int MAX_PLY = 4;
+
+    private static final int[] DX = {-1, 1, 0, 1, 0, -1};
+    private static final int[] DY = {0, 0, -1, -1, 1, 1};
+    // Ponts i les dues caselles d'enllaç de cadascun (índexs a DX/DY)
+    private static final int[] PONT_DX = {1, 2, 1, -1, -2, -1};
+    private static final int[] PONT_DY = {1, -1, -2, -1, 1, 2};
+    private static final int[] ENLLAC_A = {1, 1, 2, 0, 0, 5};
+    private static final int[] ENLLAC_B = {4, 3, 3, 2, 5, 4};
+    private static final int INF = Integer.MAX_VALUE / 2;
+
+    private int n;
+    private NeighbourTable veins;
+    private byte[] tauler;
+    private boolean[] triades;
+    private int[] distInici;
+    private int[] distFi;
+    private int[] cua;
+
+    /**
+     * @param joc posició actual
+     * @param sortida caselles proposades ({@code x * n + y}); ha de tenir mida n*n
+     * @return nombre de jugades escrites a {@code sortida}
+     */
+    public int generate(HexGameStatus joc, int[] sortida) {
+        int mida = joc.getSize();
+        if (mida != n) {
+            n = mida;
+            veins = NeighbourTable.of(n);
+            tauler = new byte[n * n];
+            triades = new boolean[n * n];
+            distInici = new int[n * n];
+            distFi = new int[n * n];
+            cua = new int[2 * n * n + 2];
+        }
+        for (int x = 0; x < n; x++) {
+            for (int y = 0; y < n; y++) {
+                tauler[x * n + y] = (byte) joc.getPos(x, y);
+            }
+        }
+        Arrays.fill(triades, false);
+        int color = joc.getCurrentPlayerColor();
+
+        int k = reparacionsPont(color, sortida, 0);
+        k = camiMinim(color, sortida, k);
+        k = camiMinim(-color, sortida, k);
+        return k;
+    }
+
+    private int reparacionsPont(int color, int[] sortida, int k) {
+        for (int x = 0; x < n; x++) {
+            for (int y = 0; y < n; y++) {
+                if (tauler[x * n + y] != color) {
+                    continue;
+                }
+                for (int p = 0; p < 6; p++) {
+                    int px = x + PONT_DX[p];
+                    int py = y + PONT_DY[p];
+                    if (!dins(px, py) || tauler[px * n + py] != color) {
+                        continue;
+                    }
+                    int a = (x + DX[ENLLAC_A[p]]) * n + (y + DY[ENLLAC_A[p]]);
+                    int b = (x + DX[ENLLAC_B[p]]) * n + (y + DY[ENLLAC_B[p]]);
+                    if (tauler[a] == -color && tauler[b] == 0) {
+                        k = afegeix(b, sortida, k);
+                    } else if (tauler[b] == -color && tauler[a] == 0) {
+                        k = afegeix(a, sortida, k);
+                    }
+                }
+            }
+        }
+        return k;
+    }
+
+    /**
+     * Afegeix les caselles buides dels camins mínims del jugador si és a
+     * {@link #DISTANCIA_CRITICA} o menys de guanyar.
+     */
+    private int camiMinim(int color, int[] sortida, int k) {
+        distancies(color, true, distInici);
+        distancies(color, false, distFi);
+        int minima = INF;
+        int[] v = veins.neighbours();
+        int desti = veins.end(color);
+        for (int i = veins.offset(desti), ultim = veins.cellsEnd(desti); i < ultim; i++) {
+            minima = Math.min(minima, distInici[v[i]]);
+        }
+        if (minima == 0 || minima > DISTANCIA_CRITICA) {
+            return k;
+        }
+        for (int c = 0; c < tauler.length; c++) {
+            if (tauler[c] == 0 && distInici[c] + distFi[c] - 1 == minima) {
+                k = afegeix(c, sortida, k);
+            }
+        }
+        return k;
+    }
+
+    /**
+     * Recorregut 0-1 des d'un costat del jugador. La distància d'una casella
+     * inclou el seu propi cost.
+     */
+    private void distancies(int color, boolean inici, int[] dist) {
+        Arrays.fill(dist, INF);
+        int cap = n * n + 1;
+        int cua0 = cap;
+        int cua1 = cap;
+        int[] v = veins.neighbours();
+        int origen = inici ? veins.start(color) : veins.end(color);
+        for (int i = veins.offset(origen), ultim = veins.cellsEnd(origen); i < ultim; i++) {
+            int c = v[i];
+            if (tauler[c] == -color) {
+                continue;
+            }
+            dist[c] = tauler[c] == 0 ? 1 : 0;
+            if (dist[c] == 0) {
+                cua[--cua0] = c;
+            } else {
+                cua[cua1++] = c;
+            }
+        }
+        while (cua0 < cua1) {
+            int c = cua[cua0++];
+            for (int i = veins.offset(c), ultim = veins.cellsEnd(c); i < ultim; i++) {
+                int w = v[i];
+                if (tauler[w] == -color) {
+                    continue;
+                }
+                int cost = tauler[w] == 0 ? 1 : 0;
+                if (dist[c] + cost < dist[w]) {
+                    dist[w] = dist[c] + cost;
+                    if (cost == 0) {
+                        cua[--cua0] = w;
+                    } else {
+                        cua[cua1++] = w;
+                    }
+                }
+            }
+        }
+    }
+
+    private int afegeix(int c, int[] sortida, int k) {
+        if (!triades[c]) {
+            triades[c] = true;
+            sortida[k++] = c;
+        }
+        return k;
+    }
+
+    private boolean dins(int x, int y) {
+        return x >= 0 && y >= 0 && x < n && y < n;
+    }
+}
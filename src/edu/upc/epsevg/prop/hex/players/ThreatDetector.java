@@ -0,0 +1,166 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import java.awt.Point;
+
+/**
+ * Detector d'amenaces immediates: troba, en una sola passada amb una
+ * estructura d'unió-cerca, totes les caselles buides que donen la victòria
+ * en una jugada a cadascun dels dos jugadors.
+ *
+ * Les caselles buides on guanyaria l'oponent són els blocatges obligats del
+ * jugador que mou. No es crea cap {@link HexGameStatus}; el detector
+ * reutilitza els seus vectors entre anàlisis.
+ */
+public class ThreatDetector {
+
+    private int n;
+    private NeighbourTable veins;
+    private byte[] tauler;
+    private int[] pare;
+    private int[][] guanyadores = new int[2][];
+    private int[] nombreGuanyadores = new int[2];
+
+    /**
+     * Analitza la posició.
+     * @param joc estat actual
+     */
+    public void analyse(HexGameStatus joc) {
+        int mida = joc.getSize();
+        if (mida != n) {
+            n = mida;
+            veins = NeighbourTable.of(n);
+            tauler = new byte[n * n];
+            // Caselles més quatre nodes virtuals: inici i fi de cada jugador
+            pare = new int[veins.nodes()];
+            guanyadores[0] = new int[n * n];
+            guanyadores[1] = new int[n * n];
+        }
+        for (int x = 0; x < n; x++) {
+            for (int y = 0; y < n; y++) {
+                tauler[x * n + y] = (byte) joc.getPos(x, y);
+            }
+        }
+        analyse();
+    }
+
+    private void analyse() {
+        for (int i = 0; i < pare.length; i++) {
+            pare[i] = i;
+        }
+        int[] v = veins.neighbours();
+        int caselles = n * n;
+        // Uneix les pedres veïnes del mateix color i les de les vores amb els nodes virtuals
+        for (int c = 0; c < caselles; c++) {
+            int color = tauler[c];
+            if (color == 0) {
+                continue;
+            }
+            for (int i = veins.offset(c), ultim = veins.neighboursEnd(c); i < ultim; i++) {
+                int w = v[i];
+                if (w >= caselles) {
+                    if (w == inici(color) || w == fi(color)) {
+                        uneix(c, w);
+                    }
+                } else if (w > c && tauler[w] == color) {
+                    // Cada parella de veïns s'uneix una sola vegada
+                    uneix(c, w);
+                }
+            }
+        }
+
+        // Una casella buida guanya si toca (directament o per un grup) els dos costats
+        nombreGuanyadores[0] = 0;
+        nombreGuanyadores[1] = 0;
+        for (int c = 0; c < caselles; c++) {
+            if (tauler[c] != 0) {
+                continue;
+            }
+            for (int k = 0; k < 2; k++) {
+                int color = k == 0 ? 1 : -1;
+                int arrelInici = arrel(inici(color));
+                int arrelFi = arrel(fi(color));
+                boolean tocaInici = false;
+                boolean tocaFi = false;
+                for (int i = veins.offset(c), ultim = veins.neighboursEnd(c); i < ultim && !(tocaInici && tocaFi); i++) {
+                    int w = v[i];
+                    if (w >= caselles) {
+                        tocaInici |= w == inici(color);
+                        tocaFi |= w == fi(color);
+                    } else if (tauler[w] == color) {
+                        int a = arrel(w);
+                        tocaInici |= a == arrelInici;
+                        tocaFi |= a == arrelFi;
+                    }
+                }
+                if (tocaInici && tocaFi) {
+                    guanyadores[k][nombreGuanyadores[k]++] = c;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param color color del jugador (1 o -1)
+     * @return nombre de caselles on guanya en una jugada
+     */
+    public int countWins(int color) {
+        return nombreGuanyadores[color == 1 ? 0 : 1];
+    }
+
+    /**
+     * @param color color del jugador (1 o -1)
+     * @param i índex entre 0 i {@link #countWins(int)}
+     * @return casella guanyadora ({@code x * n + y})
+     */
+    public int winCell(int color, int i) {
+        return guanyadores[color == 1 ? 0 : 1][i];
+    }
+
+    /**
+     * @param color color del jugador (1 o -1)
+     * @return una casella on guanya en una jugada, o null si no n'hi ha
+     */
+    public Point firstWin(int color) {
+        if (countWins(color) == 0) {
+            return null;
+        }
+        int c = winCell(color, 0);
+        return new Point(c / n, c % n);
+    }
+
+    /**
+     * Drecera d'arrel: la jugada que guanya immediatament o, si no n'hi ha,
+     * la que bloqueja una victòria immediata de l'oponent.
+     * @param colorQueMou color del jugador que mou
+     * @return la jugada forçada, o null si no n'hi ha cap
+     */
+    public Point forcedMove(int colorQueMou) {
+        Point guanya = firstWin(colorQueMou);
+        return guanya != null ? guanya : firstWin(-colorQueMou);
+    }
+
+    private int inici(int color) {
+        return veins.start(color);
+    }
+
+    private int fi(int color) {
+        return veins.end(color);
+    }
+
+    private int arrel(int i) {
+        while (pare[i] != i) {
+            pare[i] = pare[pare[i]];
+            i = pare[i];
+        }
+        return i;
+    }
+
+    private void uneix(int a, int b) {
+        int ra = arrel(a);
+        int rb = arrel(b);
+        if (ra != rb) {
+            pare[ra] = rb;
+        }
+    }
+}
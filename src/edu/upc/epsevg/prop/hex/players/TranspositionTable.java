@@ -0,0 +1,81 @@
+package edu.upc.epsevg.prop.hex.players;
+
+/**
+ * Taula de transposició de HEXTEAM.
+ *
+ * Cada entrada és un sol {@code long} que empaqueta el valor, la
+ * profunditat, el tipus de cota i la millor jugada ({@link #pack}); una
+ * entrada vàlida mai és 0, de manera que 0 vol dir "no hi és".
+ *
+ * <pre>
+ *  bits 63..32  valor
+ *  bits 31..16  millor jugada + 1 (0 si no n'hi ha)
+ *  bits 15..8   profunditat
+ *  bits  7..6   tipus + 1
+ *  bits  5..0   reservats per a la implementació (0 a les dades empaquetades)
+ * </pre>
+ */
+public interface TranspositionTable {
+
+    /**
+     * @param clau clau de Zobrist (canònica) de la posició
+     * @return dades empaquetades, o 0 si la posició no hi és
+     */
+    long probe(long clau);
+
+    /**
+     * Desa (o substitueix) l'entrada d'una posició.
+     * @param clau clau de Zobrist (canònica) de la posició
+     * @param dades dades empaquetades amb {@link #pack}
+     */
+    void store(long clau, long dades);
+
+    /**
+     * Oblida totes les entrades.
+     */
+    void clear();
+
+    /**
+     * Recorre totes les entrades vàlides (en cap ordre concret). No s'ha de
+     * cridar mentre una cerca hi escriu.
+     * @param visitor rep cada clau amb les seves dades empaquetades
+     */
+    void forEach(EntryVisitor visitor);
+
+    /**
+     * @param valor valor de la posició
+     * @param profunditat profunditat de la cerca (0..255)
+     * @param tipus tipus de valor (0..2: exacte, cota inferior, cota superior)
+     * @param jugada millor jugada ({@code x * n + y}), o -1
+     */
+    static long pack(int valor, int profunditat, int tipus, int jugada) {
+        return ((long) valor << 32)
+                | ((long) ((jugada + 1) & 0xFFFF) << 16)
+                | ((long) (profunditat & 0xFF) << 8)
+                | ((long) (tipus + 1) << 6);
+    }
+
+    static int valor(long dades) {
+        return (int) (dades >> 32);
+    }
+
+    static int jugada(long dades) {
+        return (int) ((dades >>> 16) & 0xFFFF) - 1;
+    }
+
+    static int profunditat(long dades) {
+        return (int) ((dades >>> 8) & 0xFF);
+    }
+
+    static int tipus(long dades) {
+        return (int) ((dades >>> 6) & 0x3) - 1;
+    }
+
+    /**
+     * Receptor de les entrades de {@link #forEach}.
+     */
+    interface EntryVisitor {
+
+        void visit(long clau, long dades);
+    }
+}
@@ -0,0 +1,18 @@
+package edu.upc.epsevg.prop.hex.players;
+
+/**
+ * Jugador que es pot escalfar abans de la primera jugada amb temps: fa
+ * cerques curtes sobre posicions sintètiques perquè el JIT compili els
+ * mètodes calents abans que comptin.
+ */
+public interface WarmUp {
+
+    /**
+     * Escalfa el jugador per a una mida de tauler. No canvia l'estat del
+     * jugador (taules, estadístiques, observadors).
+     * @param size mida del tauler de la partida
+     * @param maxMillis temps màxim d'escalfament
+     * @return mil·lisegons que ha durat l'escalfament
+     */
+    long warmUp(int size, long maxMillis);
+}
@@ -0,0 +1,82 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import edu.upc.epsevg.prop.hex.MoveNode;
+import edu.upc.epsevg.prop.hex.PlayerType;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Bucle d'escalfament comú dels jugadors ({@link WarmUp}).
+ *
+ * Genera posicions aleatòries (sempre les mateixes per a una mida) amb el
+ * jugador donat a moure i les cerca per rondes fins que el JIT deixa de
+ * compilar (el temps total de compilació no creix durant
+ * {@link #RONDES_ESTABLES} rondes seguides) o s'exhaureix el temps.
+ */
+final class WarmUpRunner {
+
+    private static final int POSICIONS = 8;
+    private static final int RONDES_ESTABLES = 2;
+
+    private WarmUpRunner() {
+    }
+
+    /**
+     * @param size mida del tauler
+     * @param jugador jugador que ha de moure a les posicions
+     * @param maxMillis temps màxim
+     * @param cerca cerca curta sobre una posició
+     * @return mil·lisegons transcorreguts
+     */
+    static long run(int size, PlayerType jugador, long maxMillis, Consumer<HexGameStatus> cerca) {
+        long inici = System.currentTimeMillis();
+        List<HexGameStatus> posicions = posicions(size, jugador);
+        CompilationMXBean jit = ManagementFactory.getCompilationMXBean();
+        boolean mesurable = jit != null && jit.isCompilationTimeMonitoringSupported();
+        long compilacio = mesurable ? jit.getTotalCompilationTime() : 0;
+        int estables = 0;
+        while (System.currentTimeMillis() - inici < maxMillis && estables < RONDES_ESTABLES) {
+            for (HexGameStatus joc : posicions) {
+                if (System.currentTimeMillis() - inici >= maxMillis) {
+                    break;
+                }
+                cerca.accept(new HexGameStatus(joc));
+            }
+            if (mesurable) {
+                long ara = jit.getTotalCompilationTime();
+                estables = ara == compilacio ? estables + 1 : 0;
+                compilacio = ara;
+            }
+        }
+        return System.currentTimeMillis() - inici;
+    }
+
+    /**
+     * Posicions amb entre un 10% i un 50% del tauler ple, sense acabar.
+     */
+    private static List<HexGameStatus> posicions(int size, PlayerType jugador) {
+        Random rnd = new Random(size);
+        List<HexGameStatus> res = new ArrayList<>();
+        while (res.size() < POSICIONS) {
+            HexGameStatus joc = new HexGameStatus(size);
+            int pedres = size * size / 10 + rnd.nextInt(size * size * 2 / 5 + 1);
+            for (int i = 0; i < pedres && !joc.isGameOver(); i++) {
+                List<MoveNode> moviments = joc.getMoves();
+                joc.placeStone(moviments.get(rnd.nextInt(moviments.size())).getPoint());
+            }
+            if (!joc.isGameOver() && joc.getCurrentPlayer() != jugador) {
+                List<MoveNode> moviments = joc.getMoves();
+                joc.placeStone(moviments.get(rnd.nextInt(moviments.size())).getPoint());
+            }
+            if (!joc.isGameOver() && joc.getCurrentPlayer() == jugador) {
+                res.add(joc);
+            }
+        }
+        return res;
+    }
+}
@@ -0,0 +1,113 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import java.util.SplittableRandom;
+
+/**
+ * Claus de Zobrist per a taulers de Hex.
+ *
+ * Les taules es generen amb una llavor fixa per mida, de manera que les
+ * claus són les mateixes entre execucions i processos (llibre d'obertures,
+ * taules desades a disc...).
+ *
+ * A Hex una posició i la seva rotació de 180° ((x, y) → (n-1-x, n-1-y)) són
+ * equivalents: cada jugador continua unint els mateixos costats. La clau
+ * canònica és la menor de les dues.
+ */
+public final class Zobrist {
+
+    private static final long LLAVOR = 0x5EED_4E58_C0DE_2024L;
+    private static final int MIDA_MAXIMA = 32;
+    private static final long[][] TAULES = new long[MIDA_MAXIMA + 1][];
+
+    // Totes les mides es generen en carregar la classe (uns 180 KB): així
+    // les taules són immutables i es poden llegir des de qualsevol fil
+    static {
+        for (int n = 1; n <= MIDA_MAXIMA; n++) {
+            SplittableRandom rnd = new SplittableRandom(LLAVOR ^ n);
+            long[] t = new long[2 * n * n];
+            for (int i = 0; i < t.length; i++) {
+                t[i] = rnd.nextLong();
+            }
+            TAULES[n] = t;
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Taula de claus per a una mida: l'entrada {@code 2 * (x * n + y) + c}
+     * correspon a una pedra del color {@code c} (0 = PLAYER1, 1 = PLAYER2)
+     * a la casella (x, y).
+     * @param n mida del tauler (fins a 32)
+     * @return taula de claus (no s'ha de modificar)
+     */
+    public static long[] taula(int n) {
+        return TAULES[n];
+    }
+
+    /**
+     * @param n mida del tauler
+     * @param x columna
+     * @param y fila
+     * @param color valor de la casella ({@code 1} o {@code -1}, com {@link HexGameStatus#getPos})
+     * @return clau de la pedra
+     */
+    public static long clau(int n, int x, int y, int color) {
+        return clau(n, x * n + y, color);
+    }
+
+    /**
+     * Clau d'una pedra amb la casella indexada com {@code x * n + y}. És
+     * l'única definició de la disposició de {@link #taula}.
+     * @param n mida del tauler
+     * @param casella índex de la casella
+     * @param color valor de la casella ({@code 1} o {@code -1})
+     * @return clau de la pedra
+     */
+    public static long clau(int n, int casella, int color) {
+        return taula(n)[2 * casella + (color == 1 ? 0 : 1)];
+    }
+
+    /**
+     * @return clau de la pedra situada a la casella rotada 180°
+     */
+    public static long clauRotada(int n, int x, int y, int color) {
+        return clau(n, n - 1 - x, n - 1 - y, color);
+    }
+
+    /**
+     * Calcula des de zero la clau de la posició.
+     */
+    public static long clau(HexGameStatus joc) {
+        int n = joc.getSize();
+        long k = 0;
+        for (int x = 0; x < n; x++) {
+            for (int y = 0; y < n; y++) {
+                int c = joc.getPos(x, y);
+                if (c != 0) {
+                    k ^= clau(n, x, y, c);
+                }
+            }
+        }
+        return k;
+    }
+
+    /**
+     * Calcula des de zero la clau de la posició rotada 180°.
+     */
+    public static long clauRotada(HexGameStatus joc) {
+        int n = joc.getSize();
+        long k = 0;
+        for (int x = 0; x < n; x++) {
+            for (int y = 0; y < n; y++) {
+                int c = joc.getPos(x, y);
+                if (c != 0) {
+                    k ^= clauRotada(n, x, y, c);
+                }
+            }
+        }
+        return k;
+    }
+}
@@ -0,0 +1,86 @@
+package edu.upc.epsevg.prop.hex;
+
+import java.awt.Point;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Escriptura i lectura de {@link GameRecord}.
+ */
+public class GameRecordTest {
+
+    @Rule
+    public TemporaryFolder carpeta = new TemporaryFolder();
+
+    private static GameRecord partida(String p1, String p2, PlayerType guanyador) {
+        GameRecord r = new GameRecord(11, p1, p2);
+        r.addMove(new Point(5, 5), 0, 0, 0);
+        r.addMove(new Point(0, 10), 1234, 9_876_543_210L, 64);
+        r.addMove(new Point(10, 0), Integer.MAX_VALUE, Long.MAX_VALUE, 1);
+        r.setWinner(guanyador);
+        return r;
+    }
+
+    private static void comprova(GameRecord esperat, GameRecord llegit) {
+        assertEquals(esperat.getSize(), llegit.getSize());
+        assertEquals(esperat.getPlayer1(), llegit.getPlayer1());
+        assertEquals(esperat.getPlayer2(), llegit.getPlayer2());
+        assertEquals(esperat.getWinner(), llegit.getWinner());
+        assertEquals(esperat.getMoves().size(), llegit.getMoves().size());
+        for (int i = 0; i < esperat.getMoves().size(); i++) {
+            GameRecord.Move a = esperat.getMoves().get(i);
+            GameRecord.Move b = llegit.getMoves().get(i);
+            assertEquals(a.getPoint(), b.getPoint());
+            assertEquals(a.getMillis(), b.getMillis());
+            assertEquals(a.getNodes(), b.getNodes());
+            assertEquals(a.getDepth(), b.getDepth());
+        }
+    }
+
+    @Test
+    public void bufferRoundTrip() throws IOException {
+        GameRecord r = partida("HEXTEAM", "Àlex ñ", PlayerType.PLAYER2);
+        ByteBuffer buf = ByteBuffer.allocate(r.encodedSize());
+        r.writeTo(buf);
+        assertFalse("encodedSize() ha de ser exacte", buf.hasRemaining());
+        buf.flip();
+        comprova(r, GameRecord.readFrom(buf));
+        assertFalse(buf.hasRemaining());
+    }
+
+    @Test
+    public void fileRoundTripAppends() throws IOException {
+        Path fitxer = carpeta.getRoot().toPath().resolve("partides.hexr");
+        List<GameRecord> primeres = Arrays.asList(partida("a", "b", PlayerType.PLAYER1), partida("c", "d", null));
+        GameRecord darrera = partida("e", "f", PlayerType.PLAYER2);
+        GameRecord.append(fitxer, primeres);
+        GameRecord.append(fitxer, Arrays.asList(darrera));
+
+        List<GameRecord> llegides = GameRecord.readAll(fitxer);
+        assertEquals(3, llegides.size());
+        comprova(primeres.get(0), llegides.get(0));
+        comprova(primeres.get(1), llegides.get(1));
+        comprova(darrera, llegides.get(2));
+    }
+
+    @Test
+    public void positionAtReplaysMoves() {
+        GameRecord r = partida("a", "b", null);
+        HexGameStatus s = r.positionAt(2);
+        assertEquals(1, s.getPos(5, 5));
+        assertEquals(-1, s.getPos(0, 10));
+        assertEquals(0, s.getPos(10, 0));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsBadMagic() throws IOException {
+        GameRecord.readFrom(ByteBuffer.wrap(new byte[64]));
+    }
+}
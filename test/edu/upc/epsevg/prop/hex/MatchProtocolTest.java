@@ -0,0 +1,86 @@
+package edu.upc.epsevg.prop.hex;
+
+import java.awt.Point;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Codificació dels missatges entre {@link MatchCoordinator} i {@link MatchWorker}.
+ */
+public class MatchProtocolTest {
+
+    /**
+     * Envia el missatge per un flux en memòria i el torna a rebre.
+     */
+    private static ByteBuffer anadaITornada(ByteBuffer missatge) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MatchProtocol.send(new DataOutputStream(bytes), missatge);
+        return MatchProtocol.receive(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    public void jobRoundTrip() throws IOException {
+        MatchProtocol.Job job = new MatchProtocol.Job(1234, "hexteam:8:tt=64m", "minimax:3", 11, 5,
+                Arrays.asList(new Point(0, 0), new Point(10, 10), new Point(3, 7)));
+        ByteBuffer buf = anadaITornada(job.encode());
+        assertEquals(MatchProtocol.JOB, buf.get());
+        MatchProtocol.Job llegit = MatchProtocol.Job.decode(buf);
+        assertEquals(job.id, llegit.id);
+        assertEquals(job.player1, llegit.player1);
+        assertEquals(job.player2, llegit.player2);
+        assertEquals(job.size, llegit.size);
+        assertEquals(job.timeout, llegit.timeout);
+        assertEquals(job.opening, llegit.opening);
+        assertFalse(buf.hasRemaining());
+    }
+
+    @Test
+    public void jobWithoutOpening() throws IOException {
+        MatchProtocol.Job job = new MatchProtocol.Job(0, "random", "random", 5, 1, Collections.emptyList());
+        ByteBuffer buf = anadaITornada(job.encode());
+        buf.get();
+        assertTrue(MatchProtocol.Job.decode(buf).opening.isEmpty());
+    }
+
+    @Test
+    public void resultRoundTrip() throws IOException {
+        GameRecord rec = new GameRecord(7, "p1", "p2");
+        rec.addMove(new Point(3, 3), 10, 100, 2);
+        rec.setWinner(PlayerType.PLAYER1);
+        ByteBuffer buf = anadaITornada(MatchProtocol.result(42, rec));
+        assertEquals(MatchProtocol.RESULT, buf.get());
+        assertEquals(42, buf.getInt());
+        GameRecord llegit = GameRecord.readFrom(buf);
+        assertEquals(PlayerType.PLAYER1, llegit.getWinner());
+        assertEquals(new Point(3, 3), llegit.getMoves().get(0).getPoint());
+        assertEquals(100, llegit.getMoves().get(0).getNodes());
+    }
+
+    @Test
+    public void errorRoundTrip() throws IOException {
+        ByteBuffer buf = anadaITornada(MatchProtocol.error(7, "Excepció: índex fora de límits"));
+        assertEquals(MatchProtocol.ERROR, buf.get());
+        assertEquals(7, buf.getInt());
+        assertEquals("Excepció: índex fora de límits", MatchProtocol.getString(buf));
+    }
+
+    @Test
+    public void simpleMessages() throws IOException {
+        assertEquals(MatchProtocol.READY, anadaITornada(MatchProtocol.simple(MatchProtocol.READY)).get());
+        assertEquals(MatchProtocol.BYE, anadaITornada(MatchProtocol.simple(MatchProtocol.BYE)).get());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsInvalidLength() throws IOException {
+        byte[] negatiu = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xF0};
+        MatchProtocol.receive(new DataInputStream(new ByteArrayInputStream(negatiu)));
+    }
+}
@@ -0,0 +1,61 @@
+package edu.upc.epsevg.prop.hex;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Fragments d'autojoc de {@link SelfPlayGenerator}: el que s'escriu es
+ * torna a llegir igual, i una segona execució només juga el que falta.
+ */
+public class SelfPlayGeneratorTest {
+
+    @Rule
+    public TemporaryFolder carpeta = new TemporaryFolder();
+
+    private static List<SelfPlayGenerator.Game> llegeixTot(Path directori) throws IOException {
+        List<SelfPlayGenerator.Game> partides = new ArrayList<>();
+        try (DirectoryStream<Path> fragments = Files.newDirectoryStream(directori, "*.hexs.gz")) {
+            for (Path f : fragments) {
+                partides.addAll(SelfPlayGenerator.readShard(f));
+            }
+        }
+        return partides;
+    }
+
+    @Test
+    public void shardsRoundTripAndResume() throws Exception {
+        Path directori = carpeta.getRoot().toPath();
+        SelfPlayGenerator generador = new SelfPlayGenerator(directori, "random", "random", 5, 1, 3, 7);
+        assertEquals(6, generador.run(6, 2, 4));
+
+        List<SelfPlayGenerator.Game> partides = llegeixTot(directori);
+        assertEquals(6, partides.size());
+        BitSet vistes = new BitSet();
+        for (SelfPlayGenerator.Game g : partides) {
+            vistes.set(g.getIndex());
+            assertEquals(5, g.getSize());
+            assertEquals(3, g.getOpeningPlies());
+            for (int ply = 0; ply < g.getOpeningPlies(); ply++) {
+                assertNull(g.getScore(ply));
+                assertEquals(0, g.getNodes(ply));
+            }
+            HexGameStatus final_ = g.positionAt(g.getMoves().size());
+            assertTrue(final_.isGameOver());
+            assertEquals(final_.GetWinner(), g.getWinner());
+        }
+        assertEquals(6, vistes.cardinality());
+
+        // Una segona execució només juga les partides que falten
+        assertEquals(2, generador.run(8, 2, 4));
+        assertEquals(8, llegeixTot(directori).size());
+    }
+}
@@ -0,0 +1,87 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * {@link OffHeapTranspositionTable}: lectura i escriptura, i generacions de
+ * {@link OffHeapTranspositionTable#clear()}.
+ */
+public class OffHeapTranspositionTableTest {
+
+    private static final long CLAU = 0x9E3779B97F4A7C15L;
+
+    private OffHeapTranspositionTable taula;
+
+    @Before
+    public void creaTaula() {
+        taula = new OffHeapTranspositionTable(2L << 20);
+    }
+
+    @After
+    public void tancaTaula() {
+        taula.close();
+    }
+
+    @Test
+    public void storeThenProbe() {
+        long dades = TranspositionTable.pack(-77, 9, 1, 42);
+        assertEquals(0, taula.probe(CLAU));
+        taula.store(CLAU, dades);
+        assertEquals(dades, taula.probe(CLAU));
+        // Mateixa casella, clau diferent: no s'ha de confondre
+        assertEquals(0, taula.probe(CLAU ^ (taula.capacity() << 1)));
+    }
+
+    @Test
+    public void parseSize() {
+        assertEquals(512, OffHeapTranspositionTable.parseSize("512"));
+        assertEquals(64L << 20, OffHeapTranspositionTable.parseSize("64m"));
+        assertEquals(2L << 30, OffHeapTranspositionTable.parseSize(" 2G "));
+        assertEquals(1L << 17, new OffHeapTranspositionTable(1).capacity());
+    }
+
+    @Test
+    public void clearAgesEntries() {
+        taula.store(CLAU, TranspositionTable.pack(1, 1, 0, -1));
+        taula.clear();
+        assertEquals(0, taula.probe(CLAU));
+
+        long noves = TranspositionTable.pack(2, 3, 2, 5);
+        taula.store(CLAU, noves);
+        assertEquals(noves, taula.probe(CLAU));
+    }
+
+    @Test
+    public void generationWrapDoesNotResurrectEntries() {
+        long antiga = TranspositionTable.pack(5, 5, 0, 5);
+        taula.store(CLAU, antiga);
+        // Després de 63 generacions el comptador torna a la mateixa generació
+        for (int i = 0; i < 63; i++) {
+            taula.clear();
+            assertEquals("generació " + (i + 2), 0, taula.probe(CLAU));
+        }
+        taula.clear();
+        assertEquals(0, taula.probe(CLAU));
+    }
+
+    @Test
+    public void forEachVisitsCurrentGenerationOnly() {
+        taula.store(CLAU, TranspositionTable.pack(1, 1, 0, -1));
+        taula.clear();
+        Map<Long, Long> esperades = new HashMap<>();
+        for (long i = 1; i <= 100; i++) {
+            long clau = i * 0x2545F4914F6CDD1DL;
+            long dades = TranspositionTable.pack((int) i, (int) i, (int) (i % 3), (int) i);
+            taula.store(clau, dades);
+            esperades.put(clau, dades);
+        }
+        Map<Long, Long> visitades = new HashMap<>();
+        taula.forEach(visitades::put);
+        assertEquals(esperades, visitades);
+    }
+}
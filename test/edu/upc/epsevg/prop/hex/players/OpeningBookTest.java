@@ -0,0 +1,69 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import java.awt.Point;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Escriptura i consulta de {@link OpeningBook}, incloses les posicions rotades 180°.
+ */
+public class OpeningBookTest {
+
+    @Rule
+    public TemporaryFolder carpeta = new TemporaryFolder();
+
+    private static HexGameStatus posicio(int n, int... jugades) {
+        HexGameStatus s = new HexGameStatus(n);
+        for (int k = 0; k + 1 < jugades.length; k += 2) {
+            s.placeStone(new Point(jugades[k], jugades[k + 1]));
+        }
+        return s;
+    }
+
+    /**
+     * Entrada del llibre per a la jugada {@code p} de la posició, en
+     * l'orientació de la clau canònica (com fa OpeningBookBuilder).
+     */
+    private static OpeningBook.Entry entrada(HexGameStatus joc, Point p) {
+        int n = joc.getSize();
+        long clau = Zobrist.clau(joc);
+        long clauRotada = Zobrist.clauRotada(joc);
+        if (Long.compareUnsigned(clauRotada, clau) < 0) {
+            return new OpeningBook.Entry(clauRotada, (n - 1 - p.x) * n + (n - 1 - p.y), 4, 10);
+        }
+        return new OpeningBook.Entry(clau, p.x * n + p.y, 4, 10);
+    }
+
+    @Test
+    public void writeThenLookup() throws IOException {
+        HexGameStatus buit = posicio(7);
+        HexGameStatus obert = posicio(7, 3, 3);
+        HexGameStatus asimetric = posicio(7, 0, 1, 5, 2);
+        List<OpeningBook.Entry> entrades = new ArrayList<>();
+        entrades.add(entrada(buit, new Point(3, 3)));
+        entrades.add(entrada(obert, new Point(2, 4)));
+        entrades.add(entrada(asimetric, new Point(1, 5)));
+        entrades.sort((a, b) -> Long.compareUnsigned(a.getKey(), b.getKey()));
+
+        Path fitxer = carpeta.getRoot().toPath().resolve("llibre.hexb");
+        OpeningBook.write(fitxer, 7, entrades);
+        OpeningBook llibre = OpeningBook.open(fitxer);
+        assertEquals(7, llibre.getSize());
+        assertEquals(3, llibre.getCount());
+
+        assertEquals(new Point(3, 3), llibre.lookup(buit));
+        assertEquals(new Point(2, 4), llibre.lookup(obert));
+        assertEquals(new Point(1, 5), llibre.lookup(asimetric));
+        // La mateixa posició rotada 180° dona la jugada rotada
+        assertEquals(new Point(5, 1), llibre.lookup(posicio(7, 6, 5, 1, 4)));
+        assertNull(llibre.lookup(posicio(7, 0, 0)));
+        assertNull(llibre.lookup(posicio(9)));
+    }
+}
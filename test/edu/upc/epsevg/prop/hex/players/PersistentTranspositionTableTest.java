@@ -0,0 +1,93 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Escriptura i lectura de {@link PersistentTranspositionTable}.
+ */
+public class PersistentTranspositionTableTest {
+
+    @Rule
+    public TemporaryFolder carpeta = new TemporaryFolder();
+
+    @Test
+    public void writeThenOpen() throws IOException {
+        Map<Long, Long> entrades = new HashMap<>();
+        // Claus de tot el rang, incloses les negatives (l'ordre és sense signe)
+        long[] claus = {1, -1, Long.MIN_VALUE, Long.MAX_VALUE, 0x8000_0000_0000_0001L, 42};
+        for (int i = 0; i < claus.length; i++) {
+            entrades.put(claus[i], TranspositionTable.pack(-i, 3 + i, i % 3, i - 1));
+        }
+        Path fitxer = carpeta.getRoot().toPath().resolve("taula.hext");
+        assertEquals(claus.length, PersistentTranspositionTable.write(fitxer, 9, -1, entrades));
+
+        PersistentTranspositionTable t = PersistentTranspositionTable.open(fitxer);
+        assertEquals(9, t.getSize());
+        assertEquals(-1, t.getColor());
+        assertEquals(claus.length, t.getCount());
+        for (long c : claus) {
+            assertEquals(entrades.get(c).longValue(), t.probe(c));
+        }
+        assertEquals(0, t.probe(7));
+
+        List<Long> ordre = new ArrayList<>();
+        t.forEach((clau, dades) -> ordre.add(clau));
+        for (int i = 1; i < ordre.size(); i++) {
+            assertTrue(Long.compareUnsigned(ordre.get(i - 1), ordre.get(i)) < 0);
+        }
+    }
+
+    @Test
+    public void rewriteReplacesFile() throws IOException {
+        Path fitxer = carpeta.getRoot().toPath().resolve("taula.hext");
+        Map<Long, Long> entrades = new HashMap<>();
+        entrades.put(5L, TranspositionTable.pack(1, 4, 0, 2));
+        PersistentTranspositionTable.write(fitxer, 7, 1, entrades);
+        PersistentTranspositionTable anterior = PersistentTranspositionTable.open(fitxer);
+
+        entrades.put(6L, TranspositionTable.pack(2, 5, 1, 3));
+        PersistentTranspositionTable.write(fitxer, 7, 1, entrades);
+        assertEquals(2, PersistentTranspositionTable.open(fitxer).getCount());
+        // Qui tenia la taula anterior projectada la continua llegint sencera
+        assertEquals(1, anterior.getCount());
+        assertEquals(entrades.get(5L).longValue(), anterior.probe(5L));
+    }
+
+    @Test
+    public void keepsDeepestEntries() {
+        Map<Long, Long> entrades = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            entrades.put((long) i, TranspositionTable.pack(i, i % 10, 0, -1));
+        }
+        long[] triades = PersistentTranspositionTable.mesProfundes(entrades, 25);
+        assertEquals(25, triades.length);
+        int perTall = 0;
+        for (long c : triades) {
+            int p = TranspositionTable.profunditat(entrades.get(c));
+            assertTrue(p >= 7);
+            if (p == 7) {
+                perTall++;
+            }
+        }
+        assertEquals(5, perTall);
+        assertEquals(100, PersistentTranspositionTable.mesProfundes(entrades, 1000).length);
+        assertEquals(0, PersistentTranspositionTable.mesProfundes(entrades, 0).length);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        Path fitxer = carpeta.getRoot().toPath().resolve("brossa.hext");
+        Files.write(fitxer, new byte[32]);
+        PersistentTranspositionTable.open(fitxer);
+    }
+}
@@ -0,0 +1,47 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Empaquetat de les entrades de {@link TranspositionTable}.
+ */
+public class TranspositionTableTest {
+
+    private static final int[] VALORS = {0, 1, -1, 12345, -12345, Integer.MAX_VALUE, Integer.MIN_VALUE};
+    private static final int[] JUGADES = {-1, 0, 1, 120, 1023, 0xFFFE};
+    private static final int[] PROFUNDITATS = {0, 1, 64, 254, 255};
+
+    @Test
+    public void packRoundTripsEveryField() {
+        for (int valor : VALORS) {
+            for (int jugada : JUGADES) {
+                for (int profunditat : PROFUNDITATS) {
+                    for (int tipus = 0; tipus <= 2; tipus++) {
+                        long dades = TranspositionTable.pack(valor, profunditat, tipus, jugada);
+                        String cas = valor + "/" + profunditat + "/" + tipus + "/" + jugada;
+                        assertEquals(cas, valor, TranspositionTable.valor(dades));
+                        assertEquals(cas, profunditat, TranspositionTable.profunditat(dades));
+                        assertEquals(cas, tipus, TranspositionTable.tipus(dades));
+                        assertEquals(cas, jugada, TranspositionTable.jugada(dades));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void packedEntryIsNeverEmpty() {
+        // 0 vol dir "no hi és": fins i tot l'entrada amb tots els camps a 0 ha de ser diferent
+        assertNotEquals(0, TranspositionTable.pack(0, 0, 0, -1));
+    }
+
+    @Test
+    public void reservedBitsAreZero() {
+        for (int valor : VALORS) {
+            for (int tipus = 0; tipus <= 2; tipus++) {
+                assertEquals(0, TranspositionTable.pack(valor, 255, tipus, 0xFFFE) & 0x3F);
+            }
+        }
+    }
+}